@@ -1,11 +1,95 @@
 package com.fitness.activityservice.config;
 
 
-import org.springframework.beans.factory.annotation.Configurable;
+import com.fitness.activityservice.model.Activity;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeConvertCallback;
+import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+@Slf4j
 @Configuration
 @EnableMongoAuditing
+@EnableReactiveMongoAuditing
 public class MongoConfig {
+
+    @Value("${activity.storage.collection:activities}")
+    private String activityCollection;
+
+    /*
+     * Time-series mode: the activity collection is created as a MongoDB time-series collection
+     * (timeField startTime, metaField userId) before either template is built, because index
+     * auto-creation would otherwise create it implicitly as a regular collection.
+     * Needs MongoDB 7.0+ so the outbox relay can still update eventStatus on measurements.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "activity.storage.mode", havingValue = "timeseries")
+    public TimeSeriesCollection timeSeriesCollection(MongoDatabaseFactory mongoDatabaseFactory) {
+        MongoDatabase database = mongoDatabaseFactory.getMongoDatabase();
+        boolean exists = database.listCollectionNames().into(new ArrayList<>()).contains(activityCollection);
+        if (!exists) {
+            log.info("Creating time-series collection {}", activityCollection);
+            database.createCollection(activityCollection, new CreateCollectionOptions()
+                    .timeSeriesOptions(new TimeSeriesOptions("startTime")
+                            .metaField("userId")
+                            .granularity(TimeSeriesGranularity.HOURS)));
+        }
+        return new TimeSeriesCollection(activityCollection);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "activity.storage.mode", havingValue = "timeseries")
+    public MongoTemplate mongoTemplate(MongoDatabaseFactory mongoDatabaseFactory, MongoConverter converter,
+                                       TimeSeriesCollection timeSeriesCollection) {
+        return new MongoTemplate(mongoDatabaseFactory, converter);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "activity.storage.mode", havingValue = "timeseries")
+    public ReactiveMongoTemplate reactiveMongoTemplate(ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory,
+                                                       MongoConverter converter,
+                                                       TimeSeriesCollection timeSeriesCollection) {
+        return new ReactiveMongoTemplate(reactiveMongoDatabaseFactory, converter);
+    }
+
+    // every measurement in a time-series collection needs its timeField
+    @Bean
+    @ConditionalOnProperty(name = "activity.storage.mode", havingValue = "timeseries")
+    public BeforeConvertCallback<Activity> timeFieldDefaultCallback() {
+        return (activity, collection) -> withStartTime(activity);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "activity.storage.mode", havingValue = "timeseries")
+    public ReactiveBeforeConvertCallback<Activity> reactiveTimeFieldDefaultCallback() {
+        return (activity, collection) -> Mono.just(withStartTime(activity));
+    }
+
+    private static Activity withStartTime(Activity activity) {
+        if (activity.getStartTime() == null) {
+            activity.setStartTime(LocalDateTime.now());
+        }
+        return activity;
+    }
+
+    public record TimeSeriesCollection(String name) {
+    }
 }
@@ -4,6 +4,7 @@ import org.springframework.amqp.core.*;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.RabbitTemplateCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -23,6 +24,20 @@ public class RabbitMQConfig {
     @Value("${rabbitmq.routing.key}")
     private String routingKey;
 
+    @Value("${rabbitmq.queue.bulk-name:activity.bulk.queue}")
+    private String bulkQueue;
+
+    @Value("${rabbitmq.routing.bulk-key:activity.tracking.bulk}")
+    private String bulkRoutingKey;
+
+    // json stays the default so consumers that only speak json keep working during a rolling upgrade
+    @Value("${rabbitmq.wire.format:json}")
+    private String wireFormat;
+
+    // off by default for the same reason: consumers from before gzip support cannot decode it
+    @Value("${rabbitmq.wire.compression-threshold:0}")
+    private int compressionThreshold;
+
     @Bean
     public Queue activityQueue(){
         return new Queue(queue, true);
@@ -30,11 +45,29 @@ public class RabbitMQConfig {
     }
 
 
+    // batch imports are published to their own queue so they cannot sit in front of interactive events
+    @Bean
+    public Queue activityBulkQueue(){
+        return new Queue(bulkQueue, true);
+    }
+
     @Bean
     public  MessageConverter jsonMessageConverter(){
+        if ("cbor".equalsIgnoreCase(wireFormat)) {
+            return new CborMessageConverter();
+        }
         return new Jackson2JsonMessageConverter();
     }
 
+    @Bean
+    public RabbitTemplateCustomizer compressionCustomizer(){
+        return rabbitTemplate -> {
+            if (compressionThreshold > 0) {
+                rabbitTemplate.addBeforePublishPostProcessors(new ThresholdGZipPostProcessor(compressionThreshold));
+            }
+        };
+    }
+
 
     @Bean
     public DirectExchange acitivityExchange(){
@@ -47,6 +80,12 @@ public class RabbitMQConfig {
         return BindingBuilder.bind(activityQueue).to(activityExchange).with(routingKey);
     }
 
+    @Bean
+    public Binding activityBulkBinding(Queue activityBulkQueue, DirectExchange activityExchange)
+    {
+        return BindingBuilder.bind(activityBulkQueue).to(activityExchange).with(bulkRoutingKey);
+    }
+
 
 
 
@@ -0,0 +1,24 @@
+package com.fitness.activityservice.config;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.support.postprocessor.GZipPostProcessor;
+
+public class ThresholdGZipPostProcessor implements MessagePostProcessor {
+
+    private final GZipPostProcessor gzip = new GZipPostProcessor();
+    private final int thresholdBytes;
+
+    public ThresholdGZipPostProcessor(int thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    @Override
+    public Message postProcessMessage(Message message) throws AmqpException {
+        if (message.getBody().length < thresholdBytes) {
+            return message;
+        }
+        return gzip.postProcessMessage(message);
+    }
+}
@@ -1,21 +1,39 @@
 package com.fitness.activityservice.controller;
 
 import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.ActivityPage;
 import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.dto.BatchActivityResponse;
 import com.fitness.activityservice.service.Activityservice;
+import com.fitness.activityservice.model.StatsGranularity;
+import com.fitness.activityservice.service.ActivityStatsService;
+import com.fitness.activityservice.service.UserValidationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/activities")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ActivityController {
 
     @Autowired
     private Activityservice activityservice;
 
+    @Autowired
+    private UserValidationService userValidationService;
+
+    @Autowired
+    private ActivityStatsService activityStatsService;
+
     @PostMapping
     public ResponseEntity<ActivityResponse> trackActivity(@RequestBody ActivityRequest request, @RequestHeader("X-User-Id") String  userId){
 
@@ -29,6 +47,13 @@ public class ActivityController {
 
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<BatchActivityResponse> trackActivities(@RequestBody List<ActivityRequest> requests, @RequestHeader("X-User-Id") String  userId){
+
+        return(ResponseEntity.ok(activityservice.trackActivities(userId, requests)));
+
+    }
+
     @GetMapping
     public ResponseEntity<
     List<ActivityResponse>> getUserActivities(@RequestHeader("X-User-ID")String userId){
@@ -37,10 +62,54 @@ public class ActivityController {
 
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<ActivityPage> getUserActivitiesPage(@RequestHeader("X-User-ID")String userId,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "20") int limit,
+                                                              @RequestParam(required = false) List<String> fields){
+
+        return(ResponseEntity.ok(activityservice.findPageByUserId(userId, cursor, limit, fields)));
+
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUserActivities(@RequestHeader("X-User-ID")String userId){
+
+        StreamingResponseBody body = out -> activityservice.exportByUserId(userId, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<List<ActivityStatsResponse>> getUserStats(@RequestHeader("X-User-ID")String userId,
+                                                                    @RequestParam(defaultValue = "week") String granularity,
+                                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+
+        return(ResponseEntity.ok(activityStatsService.getStats(userId, StatsGranularity.valueOf(granularity.toUpperCase()), from, to)));
+
+    }
+
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<Void> rebuildUserStats(@RequestHeader("X-User-ID")String userId){
+
+        activityStatsService.rebuild(userId);
+        return ResponseEntity.noContent().build();
+
+    }
+
     @GetMapping("/{activityId}")
     public ResponseEntity<List<ActivityResponse>> getActivitiesbyId(@PathVariable String  activityId){
 
         return(ResponseEntity.ok(activityservice.finById(activityId)));
 
     }
+
+    @DeleteMapping("/users/{userId}/validation")
+    public ResponseEntity<Void> invalidateUserValidation(@PathVariable String userId){
+
+        userValidationService.invalidate(userId);
+        return ResponseEntity.noContent().build();
+
+    }
 }
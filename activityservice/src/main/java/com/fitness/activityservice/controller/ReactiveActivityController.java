@@ -0,0 +1,117 @@
+package com.fitness.activityservice.controller;
+
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.ActivityPage;
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.dto.BatchActivityResponse;
+import com.fitness.activityservice.service.ReactiveActivityService;
+import com.fitness.activityservice.model.StatsGranularity;
+import com.fitness.activityservice.service.ActivityStatsService;
+import com.fitness.activityservice.service.UserValidationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/activities")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveActivityController {
+
+    @Autowired
+    private ReactiveActivityService activityservice;
+
+    @Autowired
+    private UserValidationService userValidationService;
+
+    @Autowired
+    private ActivityStatsService activityStatsService;
+
+    @PostMapping
+    public Mono<ResponseEntity<ActivityResponse>> trackActivity(@RequestBody ActivityRequest request, @RequestHeader("X-User-Id") String  userId){
+
+        if(userId != null)
+        {
+            request.setUserId(userId);
+        }
+
+        return activityservice.trackActivity(request).map(ResponseEntity::ok);
+
+    }
+
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<BatchActivityResponse>> trackActivities(@RequestBody List<ActivityRequest> requests, @RequestHeader("X-User-Id") String  userId){
+
+        return activityservice.trackActivities(userId, requests).map(ResponseEntity::ok);
+
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<List<ActivityResponse>>> getUserActivities(@RequestHeader("X-User-ID")String userId){
+
+        return activityservice.findByUserId(userId).collectList().map(ResponseEntity::ok);
+
+    }
+
+    @GetMapping("/page")
+    public Mono<ResponseEntity<ActivityPage>> getUserActivitiesPage(@RequestHeader("X-User-ID")String userId,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "20") int limit,
+                                                              @RequestParam(required = false) List<String> fields){
+
+        return activityservice.findPageByUserId(userId, cursor, limit, fields).map(ResponseEntity::ok);
+
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ActivityResponse> exportUserActivities(@RequestHeader("X-User-ID")String userId){
+
+        return activityservice.exportByUserId(userId);
+
+    }
+
+    @GetMapping("/stats")
+    public Mono<ResponseEntity<List<ActivityStatsResponse>>> getUserStats(@RequestHeader("X-User-ID")String userId,
+                                                                          @RequestParam(defaultValue = "week") String granularity,
+                                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+
+        return Mono.fromCallable(() -> activityStatsService.getStats(userId, StatsGranularity.valueOf(granularity.toUpperCase()), from, to))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok);
+
+    }
+
+    @PostMapping("/stats/rebuild")
+    public Mono<ResponseEntity<Void>> rebuildUserStats(@RequestHeader("X-User-ID")String userId){
+
+        return Mono.fromRunnable(() -> activityStatsService.rebuild(userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Mono.just(ResponseEntity.noContent().<Void>build()));
+
+    }
+
+    @GetMapping("/{activityId}")
+    public Mono<ResponseEntity<List<ActivityResponse>>> getActivitiesbyId(@PathVariable String  activityId){
+
+        return activityservice.finById(activityId).collectList().map(ResponseEntity::ok);
+
+    }
+
+    @DeleteMapping("/users/{userId}/validation")
+    public ResponseEntity<Void> invalidateUserValidation(@PathVariable String userId){
+
+        userValidationService.invalidate(userId);
+        return ResponseEntity.noContent().build();
+
+    }
+}
@@ -0,0 +1,22 @@
+package com.fitness.activityservice.dto;
+
+import com.fitness.activityservice.model.ActivityType;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// what the outbox publishes; high-frequency sample series stay in Mongo and are not sent to consumers
+@Data
+public class ActivityEvent {
+
+    private String id;
+    private String userId;
+    private ActivityType type;
+    private Integer duration;
+    private Integer caloriesBurned;
+    private LocalDateTime startTime;
+    private Map<String, Object> additionalMetrics;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,19 @@
+package com.fitness.activityservice.dto;
+
+import com.fitness.activityservice.model.ActivityTypeTotals;
+import com.fitness.activityservice.model.StatsGranularity;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+public class ActivityStatsResponse {
+
+    private StatsGranularity granularity;
+    private LocalDate bucketStart;
+    private long count;
+    private long totalDuration;
+    private long totalCalories;
+    private Map<String, ActivityTypeTotals> byType;
+}
@@ -1,18 +1,23 @@
 package com.fitness.activityservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
-@Document(collection ="activities")
+@Document(collection = "#{@environment.getProperty('activity.storage.collection', 'activities')}")
+@CompoundIndex(name = "user_startTime_id", def = "{'userId': 1, 'startTime': -1, '_id': -1}")
+@CompoundIndex(name = "pending_events_by_lane", def = "{'eventStatus': 1, 'eventLane': 1, 'createdAt': 1}", partialFilter = "{'eventStatus': 'PENDING'}")
 @Data
 @Builder
 @AllArgsConstructor
@@ -29,6 +34,10 @@ public class Activity {
    @Field("metrics")
    private Map<String, Object> additionalMetrics;
 
+    // only single-activity reads decode these; list, export and event payloads carry the summaries
+    @JsonIgnore
+    private List<SampleSeries> samples;
+
 
     @CreatedDate
     private LocalDateTime createdAt;
@@ -36,5 +45,22 @@ public class Activity {
     @LastModifiedDate
     private LocalDateTime updatedAt;
 
+    // outbox state lives on the activity itself so the save and its pending event are one atomic write
+    @JsonIgnore
+    private OutboxStatus eventStatus;
+
+    @JsonIgnore
+    private LocalDateTime eventPublishedAt;
+
+    @JsonIgnore
+    private EventLane eventLane;
+
+    // relay instance holding the pending event, until eventClaimedUntil
+    @JsonIgnore
+    private String eventClaimedBy;
+
+    @JsonIgnore
+    private LocalDateTime eventClaimedUntil;
+
 
 }
@@ -0,0 +1,35 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@Document(collection = "activity_stats")
+@CompoundIndex(name = "user_granularity_bucket", def = "{'userId': 1, 'granularity': 1, 'bucketStart': 1}", unique = true)
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActivityStats {
+
+    private String id;
+    private String userId;
+    private StatsGranularity granularity;
+    private LocalDate bucketStart;
+    private long count;
+    private long totalDuration;
+    private long totalCalories;
+    private Map<String, ActivityTypeTotals> byType;
+    // bumped by every record() so a rebuild can tell whether the bucket changed under it
+    private long version;
+
+    public static String idFor(String userId, StatsGranularity granularity, LocalDate bucketStart) {
+        return userId + ":" + granularity + ":" + bucketStart;
+    }
+}
@@ -0,0 +1,15 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityTypeTotals {
+
+    private long count;
+    private long totalDuration;
+    private long totalCalories;
+}
@@ -0,0 +1,7 @@
+package com.fitness.activityservice.model;
+
+// interactive events are relayed and consumed ahead of bulk imports and backfills
+public enum EventLane {
+    INTERACTIVE,
+    BULK
+}
@@ -0,0 +1,29 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A high-frequency sensor series from additionalMetrics, stored as one binary field instead of a boxed BSON array.
+ * Each dimension is a column of values scaled by 10^scales[d], delta encoded and written as zigzag varints.
+ * floating[d] records whether the column was sent as decimals, so 2.0 comes back as 2.0 rather than 2.
+ * The min/max/mean summaries are kept beside the blob so reading them never decodes the series.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SampleSeries {
+
+    private String name;
+    private int dimensions;
+    private int count;
+    private int[] scales;
+    private boolean[] floating;
+    private double[] min;
+    private double[] max;
+    private double[] mean;
+    private byte[] data;
+}
@@ -0,0 +1,71 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityEvent;
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.EventLane;
+import com.fitness.activityservice.model.OutboxStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ActivityMapper {
+
+    @Value("${activity.samples.min-length:32}")
+    private int minSeriesLength;
+
+    public Activity toActivity(ActivityRequest request){
+        SampleSeriesCodec.Extracted metrics = SampleSeriesCodec.extract(request.getAdditionalMetrics(), minSeriesLength);
+
+        return Activity.builder().
+                userId(request.getUserId())
+                .type(request.getType())
+                .duration(request.getDuration())
+                .caloriesBurned(request.getCaloriesBurned())
+                .startTime(request.getStartTime())
+                .additionalMetrics(metrics.metrics())
+                .samples(metrics.samples())
+                .eventStatus(OutboxStatus.PENDING)
+                .eventLane(EventLane.INTERACTIVE).build();
+    }
+
+    public ActivityResponse toResponse(Activity a){
+        ActivityResponse response = new ActivityResponse();
+        response.setId(a.getId());
+        response.setUserId(a.getUserId());
+        response.setType(a.getType());
+        response.setDuration(a.getDuration());
+        response.setCaloriesBurned(a.getCaloriesBurned());
+        response.setStartTime(a.getStartTime());
+        // extracted series appear as their stored count/min/max/mean summaries
+        response.setAdditionalMetrics(a.getAdditionalMetrics());
+        response.setCreatedAt(a.getCreatedAt());
+        response.setUpdatedAt(a.getUpdatedAt());
+
+        return response;
+    }
+
+    // a single activity with its sample series decoded back into the arrays the client sent
+    public ActivityResponse toDetailResponse(Activity a){
+        ActivityResponse response = toResponse(a);
+        response.setAdditionalMetrics(SampleSeriesCodec.restore(a.getAdditionalMetrics(), a.getSamples()));
+
+        return response;
+    }
+
+    public ActivityEvent toEvent(Activity a){
+        ActivityEvent event = new ActivityEvent();
+        event.setId(a.getId());
+        event.setUserId(a.getUserId());
+        event.setType(a.getType());
+        event.setDuration(a.getDuration());
+        event.setCaloriesBurned(a.getCaloriesBurned());
+        event.setStartTime(a.getStartTime());
+        event.setAdditionalMetrics(a.getAdditionalMetrics());
+        event.setCreatedAt(a.getCreatedAt());
+        event.setUpdatedAt(a.getUpdatedAt());
+
+        return event;
+    }
+}
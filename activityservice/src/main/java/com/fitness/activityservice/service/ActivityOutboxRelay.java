@@ -0,0 +1,191 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.EventLane;
+import com.fitness.activityservice.model.OutboxStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes pending activity events to RabbitMQ. Every instance runs the relay; a batch is first
+ * claimed for claim-ttl, so instances publish disjoint batches, and a claim left by a crashed
+ * instance expires and is taken over. Events are marked SENT only after the broker confirms them,
+ * so delivery stays at-least-once and consumers must tolerate the occasional duplicate.
+ */
+@Slf4j
+@Service
+public class ActivityOutboxRelay {
+
+    private final MongoTemplate mongoTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final ActivityMapper activityMapper;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+    private final Map<EventLane, AtomicLong> pendingEvents = new EnumMap<>(EventLane.class);
+    private final Map<EventLane, AtomicLong> oldestPendingAgeMillis = new EnumMap<>(EventLane.class);
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+
+    @Value("${rabbitmq.routing.key}")
+    private String routingKey;
+
+    @Value("${rabbitmq.routing.bulk-key:activity.tracking.bulk}")
+    private String bulkRoutingKey;
+
+    @Value("${activity.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${activity.outbox.confirm-timeout:5s}")
+    private Duration confirmTimeout;
+
+    @Value("${activity.outbox.claim-ttl:1m}")
+    private Duration claimTtl;
+
+    public ActivityOutboxRelay(MongoTemplate mongoTemplate, RabbitTemplate rabbitTemplate, ActivityMapper activityMapper,
+                               MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.rabbitTemplate = rabbitTemplate;
+        this.activityMapper = activityMapper;
+        this.publishedCounter = meterRegistry.counter("activity.outbox.published");
+        this.failedCounter = meterRegistry.counter("activity.outbox.publish.failures");
+        for (EventLane lane : EventLane.values()) {
+            String tag = lane.name().toLowerCase();
+            pendingEvents.put(lane, new AtomicLong());
+            oldestPendingAgeMillis.put(lane, new AtomicLong());
+            Gauge.builder("activity.outbox.pending", pendingEvents.get(lane), AtomicLong::get)
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+            Gauge.builder("activity.outbox.lag.seconds", oldestPendingAgeMillis.get(lane), age -> age.get() / 1000.0)
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    // the interactive lane is drained again before every bulk batch, so an import never delays fresh events
+    @Scheduled(fixedDelayString = "${activity.outbox.poll-interval:500ms}")
+    public void relay() {
+        boolean moreBulk;
+        do {
+            while (relayBatch(EventLane.INTERACTIVE)) {
+                // keep going while full batches come back
+            }
+            moreBulk = relayBatch(EventLane.BULK);
+        } while (moreBulk);
+
+        updateLagMetrics();
+    }
+
+    // true when a full batch was claimed and published, so more events of the lane may be pending
+    private boolean relayBatch(EventLane lane) {
+        LocalDateTime now = LocalDateTime.now();
+        Query candidates = pendingQuery(lane).addCriteria(claimable(now)).limit(batchSize);
+        candidates.fields().include("id");
+        List<String> ids = mongoTemplate.find(candidates, Activity.class).stream().map(Activity::getId).toList();
+        if (ids.isEmpty()) {
+            return false;
+        }
+
+        // another instance may claim some of the same rows first; only the rows we won are published
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("id").in(ids).and("eventStatus").is(OutboxStatus.PENDING)).addCriteria(claimable(now)),
+                new Update().set("eventClaimedBy", instanceId).set("eventClaimedUntil", now.plus(claimTtl)),
+                Activity.class);
+        Query claimed = new Query(Criteria.where("id").in(ids)
+                .and("eventStatus").is(OutboxStatus.PENDING)
+                .and("eventClaimedBy").is(instanceId))
+                .with(Sort.by("createdAt"));
+        claimed.fields().exclude("samples");
+        List<Activity> batch = mongoTemplate.find(claimed, Activity.class);
+
+        return !batch.isEmpty() && publish(batch, lane) && ids.size() == batchSize;
+    }
+
+    private Criteria claimable(LocalDateTime now) {
+        return new Criteria().orOperator(
+                Criteria.where("eventClaimedUntil").is(null),
+                Criteria.where("eventClaimedUntil").lt(now));
+    }
+
+    // marked SENT only after the broker confirms the whole batch, so a crash in between re-sends (at-least-once)
+    private boolean publish(List<Activity> batch, EventLane lane) {
+        String laneRoutingKey = lane == EventLane.BULK ? bulkRoutingKey : routingKey;
+        try {
+            rabbitTemplate.invoke(operations -> {
+                batch.forEach(activity -> operations.convertAndSend(exchange, laneRoutingKey, activityMapper.toEvent(activity), message -> {
+                    // consumers measure lane wait time from the publish timestamp
+                    message.getMessageProperties().setTimestamp(new Date());
+                    return message;
+                }));
+                operations.waitForConfirmsOrDie(confirmTimeout.toMillis());
+                return null;
+            });
+        } catch (Exception e) {
+            failedCounter.increment(batch.size());
+            log.error("Failed to relay {} {} outbox events to RabbitMQ: ", batch.size(), lane, e);
+            // give the rows back straight away rather than leaving them claimed until the claim expires
+            mongoTemplate.updateMulti(
+                    new Query(Criteria.where("id").in(ids(batch)).and("eventClaimedBy").is(instanceId)),
+                    new Update().unset("eventClaimedBy").unset("eventClaimedUntil"),
+                    Activity.class);
+            return false;
+        }
+
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("id").in(ids(batch))),
+                new Update().set("eventStatus", OutboxStatus.SENT).set("eventPublishedAt", LocalDateTime.now())
+                        .unset("eventClaimedBy").unset("eventClaimedUntil"),
+                Activity.class);
+        publishedCounter.increment(batch.size());
+        return true;
+    }
+
+    private List<String> ids(List<Activity> batch) {
+        return batch.stream().map(Activity::getId).toList();
+    }
+
+    private void updateLagMetrics() {
+        for (EventLane lane : EventLane.values()) {
+            pendingEvents.get(lane).set(mongoTemplate.count(pendingQuery(lane), Activity.class));
+
+            Query oldest = pendingQuery(lane).limit(1);
+            oldest.fields().include("createdAt");
+            Activity oldestPending = mongoTemplate.findOne(oldest, Activity.class);
+            oldestPendingAgeMillis.get(lane).set(oldestPending == null || oldestPending.getCreatedAt() == null
+                    ? 0
+                    : Duration.between(oldestPending.getCreatedAt(), LocalDateTime.now()).toMillis());
+        }
+    }
+
+    // events saved before lanes existed have no eventLane and count as interactive
+    private Query pendingQuery(EventLane lane) {
+        Criteria laneCriteria = lane == EventLane.INTERACTIVE
+                ? Criteria.where("eventLane").in(EventLane.INTERACTIVE, null)
+                : Criteria.where("eventLane").is(lane);
+        return new Query(Criteria.where("eventStatus").is(OutboxStatus.PENDING).andOperator(laneCriteria))
+                .with(Sort.by("createdAt"));
+    }
+}
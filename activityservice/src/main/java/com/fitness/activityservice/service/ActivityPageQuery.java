@@ -0,0 +1,72 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keyset page queries over a user's activities, newest startTime first with id as tie-breaker.
+ * The cursor is the opaque (startTime, id) of the previous page's last row.
+ */
+public final class ActivityPageQuery {
+
+    private static final Set<String> PROJECTABLE_FIELDS = Set.of(
+            "userId", "type", "duration", "caloriesBurned", "additionalMetrics", "createdAt", "updatedAt");
+
+    private ActivityPageQuery() {
+    }
+
+    public static Query build(String userId, String cursor, int limit, List<String> fields) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+
+        if (cursor != null && !cursor.isBlank()) {
+            Activity last = decodeCursor(cursor);
+            if (last.getStartTime() != null) {
+                criteria = criteria.orOperator(
+                        Criteria.where("startTime").lt(last.getStartTime()),
+                        Criteria.where("startTime").is(last.getStartTime()).and("id").lt(last.getId()),
+                        Criteria.where("startTime").is(null));
+            } else {
+                criteria = criteria.and("startTime").is(null).and("id").lt(last.getId());
+            }
+        }
+
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "startTime", "id"))
+                .limit(limit);
+
+        if (fields != null && !fields.isEmpty()) {
+            query.fields().include("id", "startTime");
+            fields.stream()
+                    .filter(PROJECTABLE_FIELDS::contains)
+                    .forEach(field -> query.fields().include(field));
+        }
+        return query;
+    }
+
+    public static String encodeCursor(Activity last) {
+        String raw = (last.getStartTime() == null ? "" : last.getStartTime().toString()) + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Activity decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            String startTime = raw.substring(0, separator);
+            return Activity.builder()
+                    .startTime(startTime.isEmpty() ? null : LocalDateTime.parse(startTime))
+                    .id(raw.substring(separator + 1))
+                    .build();
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityStats;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.ActivityTypeTotals;
+import com.fitness.activityservice.model.StatsGranularity;
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityStatsService {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${activity.stats.rebuild-settle:1m}")
+    private Duration rebuildSettle;
+
+    @Value("${activity.stats.rebuild-attempts:3}")
+    private int rebuildAttempts;
+
+    // one $inc upsert per granularity per activity, sent as a single unordered bulk write
+    public void record(List<Activity> activities) {
+        if (activities.isEmpty()) {
+            return;
+        }
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityStats.class);
+        for (Activity activity : activities) {
+            LocalDate day = activityDate(activity);
+            String type = typeOf(activity);
+            long duration = activity.getDuration() == null ? 0 : activity.getDuration();
+            long calories = activity.getCaloriesBurned() == null ? 0 : activity.getCaloriesBurned();
+
+            for (StatsGranularity granularity : StatsGranularity.values()) {
+                LocalDate bucketStart = granularity.bucketStart(day);
+                Update update = new Update()
+                        .setOnInsert("userId", activity.getUserId())
+                        .setOnInsert("granularity", granularity)
+                        .setOnInsert("bucketStart", bucketStart)
+                        .inc("version", 1)
+                        .inc("count", 1)
+                        .inc("totalDuration", duration)
+                        .inc("totalCalories", calories)
+                        .inc("byType." + type + ".count", 1)
+                        .inc("byType." + type + ".totalDuration", duration)
+                        .inc("byType." + type + ".totalCalories", calories);
+                operations.upsert(new Query(Criteria.where("id")
+                        .is(ActivityStats.idFor(activity.getUserId(), granularity, bucketStart))), update);
+            }
+        }
+        try {
+            operations.execute();
+        } catch (Exception e) {
+            log.error("Failed to update activity stats rollups, run a rebuild to repair: ", e);
+        }
+    }
+
+    public List<ActivityStatsResponse> getStats(String userId, StatsGranularity granularity, LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where("userId").is(userId).and("granularity").is(granularity);
+        if (from != null || to != null) {
+            Criteria bucketStart = criteria.and("bucketStart");
+            if (from != null) {
+                bucketStart.gte(granularity.bucketStart(from));
+            }
+            if (to != null) {
+                bucketStart.lte(to);
+            }
+        }
+
+        return mongoTemplate.find(new Query(criteria).with(Sort.by("bucketStart")), ActivityStats.class)
+                .stream()
+                .map(this::toResponse)
+                .collect(Collectors.toList());
+    }
+
+    /*
+     * Recomputes in memory per user; memory is bounded by the number of buckets, not the number of activities.
+     * record() keeps running meanwhile and bumps each bucket's version, so every write here is conditional on
+     * the version read before the activities were streamed; if any bucket moved, the rebuild runs again.
+     * An $inc still on its way for an activity the stream already counted cannot be caught that way, so a
+     * bucket holding an activity saved within rebuild-settle of the start is left for the next rebuild.
+     */
+    public void rebuild(String userId) {
+        for (int attempt = 1; attempt <= rebuildAttempts; attempt++) {
+            if (tryRebuild(userId)) {
+                return;
+            }
+        }
+        log.warn("Stats buckets for user {} kept changing over {} rebuild attempts, the rest is left for the next rebuild",
+                userId, rebuildAttempts);
+    }
+
+    private boolean tryRebuild(String userId) {
+        LocalDateTime settled = LocalDateTime.now().minus(rebuildSettle);
+        Query current = new Query(Criteria.where("userId").is(userId));
+        current.fields().include("version");
+        Map<String, Long> versions = new HashMap<>();
+        mongoTemplate.find(current, ActivityStats.class).forEach(stats -> versions.put(stats.getId(), stats.getVersion()));
+
+        Map<String, ActivityStats> rollups = new LinkedHashMap<>();
+        Set<String> unsettled = new HashSet<>();
+        try (Stream<Activity> activities = mongoTemplate.stream(Activityservice.exportQuery(userId, 500), Activity.class)) {
+            activities.forEach(activity -> {
+                LocalDate day = activityDate(activity);
+                boolean recent = activity.getCreatedAt() != null && !activity.getCreatedAt().isBefore(settled);
+                for (StatsGranularity granularity : StatsGranularity.values()) {
+                    LocalDate bucketStart = granularity.bucketStart(day);
+                    ActivityStats stats = rollups.computeIfAbsent(
+                            ActivityStats.idFor(userId, granularity, bucketStart),
+                            id -> ActivityStats.builder()
+                                    .id(id)
+                                    .userId(userId)
+                                    .granularity(granularity)
+                                    .bucketStart(bucketStart)
+                                    .byType(new HashMap<>())
+                                    .build());
+                    add(stats, activity);
+                    if (recent) {
+                        unsettled.add(stats.getId());
+                    }
+                }
+            });
+        }
+
+        // replaced and removed buckets are disjoint, so readers never see an empty rollup for a bucket with activities
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityStats.class);
+        int replaced = 0;
+        int inserted = 0;
+        int removed = 0;
+        for (ActivityStats stats : rollups.values()) {
+            if (unsettled.contains(stats.getId())) {
+                continue;
+            }
+            Long version = versions.get(stats.getId());
+            if (version == null) {
+                operations.insert(stats);
+                inserted++;
+            } else {
+                stats.setVersion(version);
+                operations.replaceOne(atVersion(stats.getId(), version), stats);
+                replaced++;
+            }
+        }
+        for (Map.Entry<String, Long> bucket : versions.entrySet()) {
+            if (!rollups.containsKey(bucket.getKey())) {
+                operations.remove(atVersion(bucket.getKey(), bucket.getValue()));
+                removed++;
+            }
+        }
+        if (replaced + inserted + removed == 0) {
+            return true;
+        }
+
+        BulkWriteResult result;
+        try {
+            result = operations.execute();
+        } catch (BulkOperationException e) {
+            // a duplicate key only means record() created the bucket after the versions were read
+            if (!e.getErrors().stream().allMatch(error -> error.getCode() == 11000)) {
+                throw e;
+            }
+            result = e.getResult();
+        }
+        log.info("Rebuilt stats buckets for user {}: {} replaced, {} inserted, {} removed, {} left for the next rebuild",
+                userId, result.getMatchedCount(), result.getInsertedCount(), result.getDeletedCount(), unsettled.size());
+        return result.getMatchedCount() == replaced
+                && result.getInsertedCount() == inserted
+                && result.getDeletedCount() == removed;
+    }
+
+    // buckets written before versioning have no version field, which $in with null matches
+    private static Query atVersion(String id, long version) {
+        Criteria criteria = Criteria.where("id").is(id);
+        return new Query(version == 0 ? criteria.and("version").in(0L, null) : criteria.and("version").is(version));
+    }
+
+    @Scheduled(cron = "${activity.stats.rebuild-cron:-}")
+    public void rebuildAll() {
+        List<String> userIds = mongoTemplate.findDistinct(new Query(), "userId", Activity.class, String.class);
+        userIds.forEach(this::rebuild);
+    }
+
+    private void add(ActivityStats stats, Activity activity) {
+        long duration = activity.getDuration() == null ? 0 : activity.getDuration();
+        long calories = activity.getCaloriesBurned() == null ? 0 : activity.getCaloriesBurned();
+
+        stats.setCount(stats.getCount() + 1);
+        stats.setTotalDuration(stats.getTotalDuration() + duration);
+        stats.setTotalCalories(stats.getTotalCalories() + calories);
+
+        ActivityTypeTotals totals = stats.getByType().computeIfAbsent(typeOf(activity), type -> new ActivityTypeTotals());
+        totals.setCount(totals.getCount() + 1);
+        totals.setTotalDuration(totals.getTotalDuration() + duration);
+        totals.setTotalCalories(totals.getTotalCalories() + calories);
+    }
+
+    private LocalDate activityDate(Activity activity) {
+        if (activity.getStartTime() != null) {
+            return activity.getStartTime().toLocalDate();
+        }
+        return activity.getCreatedAt() != null ? activity.getCreatedAt().toLocalDate() : LocalDateTime.now().toLocalDate();
+    }
+
+    private String typeOf(Activity activity) {
+        return (activity.getType() == null ? ActivityType.OTHER : activity.getType()).name();
+    }
+
+    private ActivityStatsResponse toResponse(ActivityStats stats) {
+        ActivityStatsResponse response = new ActivityStatsResponse();
+        response.setGranularity(stats.getGranularity());
+        response.setBucketStart(stats.getBucketStart());
+        response.setCount(stats.getCount());
+        response.setTotalDuration(stats.getTotalDuration());
+        response.setTotalCalories(stats.getTotalCalories());
+        response.setByType(stats.getByType());
+        return response;
+    }
+}
@@ -0,0 +1,107 @@
+package com.fitness.activityservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Copies activities from the regular collection into the time-series collection in _id order.
+ * Progress is the last copied source _id, kept in a checkpoint document after every batch, so an
+ * interrupted run can simply be restarted. It is not derived from the target, which also receives
+ * new activities (with higher ids) while the service runs. Every batch skips ids the target already
+ * holds, so copies a crash left behind between insert and checkpoint are never inserted twice.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "activity.storage.migrate-from")
+public class ActivityStorageMigration implements ApplicationRunner {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${activity.storage.migrate-from}")
+    private String sourceCollection;
+
+    @Value("${activity.storage.collection:activities}")
+    private String targetCollection;
+
+    @Value("${activity.storage.migrate-batch-size:1000}")
+    private int batchSize;
+
+    @Value("${activity.storage.migrate-checkpoints:activity_storage_migrations}")
+    private String checkpointCollection;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (sourceCollection.equals(targetCollection)) {
+            log.warn("Skipping activity migration, source and target are both {}", sourceCollection);
+            return;
+        }
+
+        String checkpointId = sourceCollection + "->" + targetCollection;
+        Document checkpoint = mongoTemplate.findById(checkpointId, Document.class, checkpointCollection);
+
+        Query source = new Query().with(Sort.by("_id")).cursorBatchSize(batchSize);
+        if (checkpoint != null) {
+            source.addCriteria(Criteria.where("_id").gt(checkpoint.get("lastId")));
+        }
+
+        long copied = 0;
+        List<Document> batch = new ArrayList<>(batchSize);
+        try (Stream<Document> documents = mongoTemplate.stream(source, Document.class, sourceCollection)) {
+            for (Document document : (Iterable<Document>) documents::iterator) {
+                if (document.get("startTime") == null) {
+                    document.put("startTime", document.get("createdAt") != null ? document.get("createdAt") : new Date());
+                }
+                batch.add(document);
+                if (batch.size() == batchSize) {
+                    copied += flush(batch, checkpointId);
+                }
+            }
+        }
+        copied += flush(batch, checkpointId);
+        log.info("Copied {} activities from {} to {}", copied, sourceCollection, targetCollection);
+    }
+
+    // a time-series target has no unique _id index to reject a second copy, so existing ids are looked up;
+    // narrowing by userId lets the lookup use the metaField index instead of scanning every bucket
+    private int flush(List<Document> batch, String checkpointId) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Object> ids = batch.stream().map(document -> document.get("_id")).toList();
+        List<Object> userIds = batch.stream().map(document -> document.get("userId")).distinct().toList();
+        Query existing = new Query(Criteria.where("_id").in(ids).and("userId").in(userIds));
+        existing.fields().include("_id");
+        Set<Object> copied = mongoTemplate.find(existing, Document.class, targetCollection).stream()
+                .map(document -> document.get("_id"))
+                .collect(Collectors.toSet());
+
+        List<Document> missing = batch.stream().filter(document -> !copied.contains(document.get("_id"))).toList();
+        if (!missing.isEmpty()) {
+            mongoTemplate.getCollection(targetCollection).insertMany(missing);
+        }
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(checkpointId)),
+                new Update().set("lastId", ids.get(ids.size() - 1)).set("updatedAt", new Date()),
+                checkpointCollection);
+        batch.clear();
+        return missing.size();
+    }
+}
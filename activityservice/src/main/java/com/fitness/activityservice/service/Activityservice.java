@@ -1,18 +1,40 @@
 package com.fitness.activityservice.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fitness.activityservice.controller.ActivityController;
 import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.ActivityPage;
 import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.BatchActivityResponse;
+import com.fitness.activityservice.dto.BatchActivityResult;
 import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.EventLane;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -21,14 +43,22 @@ public class Activityservice {
 
     private final ActivityRepository activityRepository;
     private final UserValidationService userValidationService;
-    private final RabbitTemplate rabbitTemplate;
+    private final ActivityMapper activityMapper;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final ActivityStatsService activityStatsService;
 
-    @Value("${rabbitmq.exchange.name}")
-    private String exchange;
+    @Value("${activity.batch.max-size:500}")
+    private int maxBatchSize;
 
+    @Value("${activity.page.max-size:100}")
+    private int maxPageSize;
 
-    @Value("${rabbitmq.routing.key}")
-    private String routingKey;
+    @Value("${activity.export.cursor-batch-size:500}")
+    private int exportBatchSize;
+
+    @Value("${activity.export.flush-every:100}")
+    private int exportFlushEvery;
 
     public ActivityResponse trackActivity(ActivityRequest request){
 
@@ -38,52 +68,130 @@ public class Activityservice {
         if(!isValidUser){
             throw new RuntimeException("Invalid User: " + request.getUserId());
         }
-        Activity activity = Activity.builder().
-                userId(request.getUserId())
-                .type(request.getType())
-                .duration(request.getDuration())
-                .caloriesBurned(request.getCaloriesBurned())
-                .startTime(request.getStartTime())
-                .additionalMetrics(request.getAdditionalMetrics()).build();
+        Activity activity = activityMapper.toActivity(request);
 
         Activity savedActivity = activityRepository.save(activity);
+        activityStatsService.record(List.of(savedActivity));
+
+        return activityMapper.toResponse(savedActivity);
+
+    }
 
-        try{
-            rabbitTemplate.convertAndSend(exchange, routingKey, savedActivity);
-        } catch (Exception e) {
-            log.error("Failed to publish activity to RabbitMQ: ", e);
+
+    public BatchActivityResponse trackActivities(String userId, List<ActivityRequest> requests){
+
+        if(requests.size() > maxBatchSize){
+            throw new RuntimeException("Batch size exceeds limit of " + maxBatchSize);
         }
 
-        return maptoResponse(savedActivity);
+        boolean isValidUser = userValidationService.validateUser(userId);
+        if(!isValidUser){
+            throw new RuntimeException("Invalid User: " + userId);
+        }
 
-    }
+        // ids are assigned up front so each bulk-insert slot maps back to its request index; with an id
+        // already set, auditing treats the rows as updates and skips @CreatedDate, so timestamps are set here
+        LocalDateTime now = LocalDateTime.now();
+        List<Activity> activities = new ArrayList<>(requests.size());
+        for (ActivityRequest request : requests) {
+            request.setUserId(userId);
+            Activity activity = activityMapper.toActivity(request);
+            activity.setId(new ObjectId().toHexString());
+            activity.setCreatedAt(now);
+            activity.setUpdatedAt(now);
+            activity.setEventLane(EventLane.BULK);
+            activities.add(activity);
+        }
 
+        Map<Integer, String> failures = new HashMap<>();
+        if(!activities.isEmpty()) {
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Activity.class)
+                        .insert(activities)
+                        .execute();
+            } catch (BulkOperationException e) {
+                e.getErrors().forEach(error -> failures.put(error.getIndex(), error.getMessage()));
+            }
+        }
+
+        List<BatchActivityResult> results = new ArrayList<>(activities.size());
+        List<Activity> savedActivities = new ArrayList<>(activities.size());
+        for (int i = 0; i < activities.size(); i++) {
+            if(failures.containsKey(i)){
+                results.add(new BatchActivityResult(i, false, null, failures.get(i)));
+            } else {
+                savedActivities.add(activities.get(i));
+                results.add(new BatchActivityResult(i, true, activityMapper.toResponse(activities.get(i)), null));
+            }
+        }
 
-    private ActivityResponse maptoResponse(Activity a){
-        ActivityResponse response = new ActivityResponse();
-        response.setId(a.getId());
-        response.setUserId(a.getUserId());
-        response.setType(a.getType());
-        response.setDuration(a.getDuration());
-        response.setCaloriesBurned(a.getCaloriesBurned());
-        response.setStartTime(a.getStartTime());
-        response.setAdditionalMetrics(a.getAdditionalMetrics());
-        response.setCreatedAt(a.getCreatedAt());
-        response.setUpdatedAt(a.getUpdatedAt());
+        activityStatsService.record(savedActivities);
 
-        return response;
+        return new BatchActivityResponse(savedActivities.size(), failures.size(), results);
     }
 
     public List<ActivityResponse> findByUserId(String userId) {
         List<Activity> activities = activityRepository.findByUserId(userId);
 
-        return activities.stream().map(this::maptoResponse).collect(Collectors.toList());
+        return activities.stream().map(activityMapper::toResponse).collect(Collectors.toList());
+    }
+
+    public ActivityPage findPageByUserId(String userId, String cursor, int limit, List<String> fields) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+
+        // one extra row tells us whether another page exists without a count query
+        List<Activity> activities = mongoTemplate.find(
+                ActivityPageQuery.build(userId, cursor, pageSize + 1, fields), Activity.class);
+
+        return toPage(activities, pageSize, activityMapper);
+    }
+
+    static ActivityPage toPage(List<Activity> activities, int pageSize, ActivityMapper activityMapper) {
+        boolean hasMore = activities.size() > pageSize;
+        List<Activity> page = hasMore ? activities.subList(0, pageSize) : activities;
+        String nextCursor = hasMore ? ActivityPageQuery.encodeCursor(page.get(page.size() - 1)) : null;
+
+        return new ActivityPage(page.stream().map(activityMapper::toResponse).collect(Collectors.toList()), nextCursor);
+    }
+
+    public void exportByUserId(String userId, OutputStream out) throws IOException {
+        Query query = exportQuery(userId, exportBatchSize);
+        ObjectWriter writer = objectMapper.writerFor(ActivityResponse.class)
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        int written = 0;
+        try (Stream<Activity> activities = mongoTemplate.stream(query, Activity.class);
+             SequenceWriter rows = writer.writeValues(out)) {
+            for (Activity activity : (Iterable<Activity>) activities::iterator) {
+                rows.write(activityMapper.toResponse(activity));
+                // flush the first row straight away so the client gets bytes before the cursor is drained
+                if (++written == 1 || written % exportFlushEvery == 0) {
+                    rows.flush();
+                }
+            }
+        }
+        // the separator only goes between rows, so the last line is terminated here
+        if (written > 0) {
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    // samples are left in Mongo; export rows and rebuilds only need the summaries
+    static Query exportQuery(String userId, int batchSize) {
+        Query query = new Query(Criteria.where("userId").is(userId))
+                .with(Sort.by("startTime"))
+                .cursorBatchSize(batchSize);
+        query.fields().exclude("samples");
+        return query;
     }
 
     public List<ActivityResponse> finById(String id) {
         Optional<Activity> activities = activityRepository.findById(id);
 
-        return activities.stream().map(this::maptoResponse).collect(Collectors.toList());
+        return activities.stream().map(activityMapper::toDetailResponse).collect(Collectors.toList());
 
 
     }
@@ -0,0 +1,9 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+public interface ReactiveActivityRepository extends ReactiveMongoRepository<Activity, String> {
+    Flux<Activity> findByUserId(String userId);
+}
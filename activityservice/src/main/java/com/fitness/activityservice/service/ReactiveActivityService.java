@@ -0,0 +1,78 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.ActivityPage;
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.BatchActivityResponse;
+import com.fitness.activityservice.model.Activity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReactiveActivityService {
+
+    private final ReactiveActivityRepository activityRepository;
+    private final UserValidationService userValidationService;
+    private final ActivityMapper activityMapper;
+    private final Activityservice activityservice;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ActivityStatsService activityStatsService;
+
+    @Value("${activity.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${activity.export.cursor-batch-size:500}")
+    private int exportBatchSize;
+
+    public Mono<ActivityResponse> trackActivity(ActivityRequest request){
+
+        return userValidationService.validateUserAsync(request.getUserId())
+                .flatMap(isValidUser -> {
+                    if(!isValidUser){
+                        return Mono.error(new RuntimeException("Invalid User: " + request.getUserId()));
+                    }
+                    return activityRepository.save(activityMapper.toActivity(request));
+                })
+                .flatMap(savedActivity -> Mono.fromRunnable(() -> activityStatsService.record(List.of(savedActivity)))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .thenReturn(savedActivity))
+                .map(activityMapper::toResponse);
+    }
+
+    // the bulk insert is a single round trip, so the blocking batch path is reused off the event loop
+    public Mono<BatchActivityResponse> trackActivities(String userId, List<ActivityRequest> requests){
+        return Mono.fromCallable(() -> activityservice.trackActivities(userId, requests))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Flux<ActivityResponse> findByUserId(String userId) {
+        return activityRepository.findByUserId(userId).map(activityMapper::toResponse);
+    }
+
+    public Mono<ActivityPage> findPageByUserId(String userId, String cursor, int limit, List<String> fields) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+
+        return reactiveMongoTemplate.find(ActivityPageQuery.build(userId, cursor, pageSize + 1, fields), Activity.class)
+                .collectList()
+                .map(activities -> Activityservice.toPage(activities, pageSize, activityMapper));
+    }
+
+    public Flux<ActivityResponse> exportByUserId(String userId) {
+        return reactiveMongoTemplate.find(Activityservice.exportQuery(userId, exportBatchSize), Activity.class)
+                .map(activityMapper::toResponse);
+    }
+
+    public Flux<ActivityResponse> finById(String id) {
+        return activityRepository.findById(id).map(activityMapper::toDetailResponse).flux();
+    }
+}
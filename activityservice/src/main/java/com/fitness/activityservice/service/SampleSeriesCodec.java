@@ -0,0 +1,263 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.SampleSeries;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class SampleSeriesCodec {
+
+    private static final int MAX_SCALE = 7;
+    // largest magnitude a double holds as an exact integer, so scaled values survive the long round trip
+    private static final double MAX_SCALED = 0x1p53;
+    // column kinds, so a whole decimal such as 2.0 is restored as a Double and a count as a Long
+    private static final int INTEGRAL = 1;
+    private static final int FLOATING = 2;
+
+    private SampleSeriesCodec() {
+    }
+
+    public record Extracted(Map<String, Object> metrics, List<SampleSeries> samples) {
+    }
+
+    // numeric arrays (or arrays of equal-length numeric tuples such as GPS points) at or above minSamples are
+    // moved out of the map into encoded series, leaving a summary map in their place; an array whose values
+    // cannot be stored exactly (too many decimals, too large once scaled, NaN, a column mixing whole and
+    // decimal types) stays in the map as it is
+    public static Extracted extract(Map<String, Object> metrics, int minSamples) {
+        if (metrics == null) {
+            return new Extracted(null, null);
+        }
+        Map<String, Object> remaining = new LinkedHashMap<>(metrics);
+        List<SampleSeries> samples = new ArrayList<>();
+
+        metrics.forEach((name, value) -> {
+            Columns columns = toColumns(value, minSamples);
+            SampleSeries series = columns == null ? null : encode(name, columns.values(), columns.floating());
+            if (series != null) {
+                samples.add(series);
+                remaining.put(name, summary(series));
+            }
+        });
+
+        return new Extracted(remaining, samples.isEmpty() ? null : samples);
+    }
+
+    // puts the decoded arrays back in the shape the client originally sent
+    public static Map<String, Object> restore(Map<String, Object> metrics, List<SampleSeries> samples) {
+        if (samples == null || samples.isEmpty()) {
+            return metrics;
+        }
+        Map<String, Object> restored = metrics == null ? new LinkedHashMap<>() : new LinkedHashMap<>(metrics);
+        samples.forEach(series -> restored.put(series.getName(), toList(series, decode(series))));
+        return restored;
+    }
+
+    public static Map<String, Object> summary(SampleSeries series) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", series.getCount());
+        if (series.getDimensions() == 1) {
+            summary.put("min", series.getMin()[0]);
+            summary.put("max", series.getMax()[0]);
+            summary.put("mean", series.getMean()[0]);
+        } else {
+            summary.put("min", Arrays.stream(series.getMin()).boxed().toList());
+            summary.put("max", Arrays.stream(series.getMax()).boxed().toList());
+            summary.put("mean", Arrays.stream(series.getMean()).boxed().toList());
+        }
+        return summary;
+    }
+
+    // null when some value would not decode to exactly what was sent
+    public static SampleSeries encode(String name, double[][] columns, boolean[] floating) {
+        int dimensions = columns.length;
+        int count = columns[0].length;
+        int[] scales = new int[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            scales[d] = scaleOf(columns[d]);
+            if (scales[d] < 0) {
+                return null;
+            }
+        }
+
+        double[] min = new double[dimensions];
+        double[] max = new double[dimensions];
+        double[] mean = new double[dimensions];
+        byte[] buffer = new byte[dimensions * count * 10];
+        int position = 0;
+
+        for (int d = 0; d < dimensions; d++) {
+            double[] column = columns[d];
+            double factor = Math.pow(10, scales[d]);
+            min[d] = Double.POSITIVE_INFINITY;
+            max[d] = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            long previous = 0;
+            for (double value : column) {
+                min[d] = Math.min(min[d], value);
+                max[d] = Math.max(max[d], value);
+                sum += value;
+                double product = value * factor;
+                if (!(Math.abs(product) < MAX_SCALED)) {
+                    return null;
+                }
+                long scaled = Math.round(product);
+                if (scaled / factor != value) {
+                    return null;
+                }
+                position = writeVarint(buffer, position, zigzag(scaled - previous));
+                previous = scaled;
+            }
+            mean[d] = sum / count;
+        }
+
+        return SampleSeries.builder()
+                .name(name)
+                .dimensions(dimensions)
+                .count(count)
+                .scales(scales)
+                .floating(floating)
+                .min(min)
+                .max(max)
+                .mean(mean)
+                .data(Arrays.copyOf(buffer, position))
+                .build();
+    }
+
+    public static double[][] decode(SampleSeries series) {
+        double[][] columns = new double[series.getDimensions()][series.getCount()];
+        byte[] data = series.getData();
+        int position = 0;
+
+        for (int d = 0; d < series.getDimensions(); d++) {
+            double factor = Math.pow(10, series.getScales()[d]);
+            long previous = 0;
+            for (int i = 0; i < series.getCount(); i++) {
+                long raw = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    raw |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                previous += (raw >>> 1) ^ -(raw & 1);
+                columns[d][i] = previous / factor;
+            }
+        }
+        return columns;
+    }
+
+    private static List<Object> toList(SampleSeries series, double[][] columns) {
+        List<Object> values = new ArrayList<>(series.getCount());
+        for (int i = 0; i < series.getCount(); i++) {
+            if (series.getDimensions() == 1) {
+                values.add(number(columns[0][i], series.getFloating()[0]));
+            } else {
+                List<Object> tuple = new ArrayList<>(series.getDimensions());
+                for (int d = 0; d < series.getDimensions(); d++) {
+                    tuple.add(number(columns[d][i], series.getFloating()[d]));
+                }
+                values.add(tuple);
+            }
+        }
+        return values;
+    }
+
+    private static Object number(double value, boolean floating) {
+        return floating ? (Object) value : (Object) (long) value;
+    }
+
+    private record Columns(double[][] values, boolean[] floating) {
+    }
+
+    private static Columns toColumns(Object value, int minSamples) {
+        if (!(value instanceof List<?> list) || list.size() < minSamples) {
+            return null;
+        }
+        Object first = list.get(0);
+        int dimensions = first instanceof List<?> tuple ? tuple.size() : 1;
+        if (dimensions == 0) {
+            return null;
+        }
+
+        double[][] columns = new double[dimensions][list.size()];
+        int[] kinds = new int[dimensions];
+        for (int i = 0; i < list.size(); i++) {
+            Object item = list.get(i);
+            if (dimensions == 1) {
+                if (!add(columns, kinds, 0, i, item)) {
+                    return null;
+                }
+            } else {
+                if (!(item instanceof List<?> tuple) || tuple.size() != dimensions) {
+                    return null;
+                }
+                for (int d = 0; d < dimensions; d++) {
+                    if (!add(columns, kinds, d, i, tuple.get(d))) {
+                        return null;
+                    }
+                }
+            }
+        }
+
+        boolean[] floating = new boolean[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            floating[d] = kinds[d] == FLOATING;
+        }
+        return new Columns(columns, floating);
+    }
+
+    // false for a value that is not a plain Java number or whose type differs from the rest of its column
+    private static boolean add(double[][] columns, int[] kinds, int dimension, int index, Object value) {
+        int kind;
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            kind = INTEGRAL;
+        } else if (value instanceof Double || value instanceof Float) {
+            kind = FLOATING;
+        } else {
+            return false;
+        }
+        if (kinds[dimension] != 0 && kinds[dimension] != kind) {
+            return false;
+        }
+        kinds[dimension] = kind;
+        columns[dimension][index] = ((Number) value).doubleValue();
+        return true;
+    }
+
+    // decimal places needed by the column, or -1 if a value needs more than MAX_SCALE or is not finite
+    private static int scaleOf(double[] column) {
+        int scale = 0;
+        for (double value : column) {
+            if (!Double.isFinite(value)) {
+                return -1;
+            }
+            if (value != Math.rint(value)) {
+                int places = BigDecimal.valueOf(value).stripTrailingZeros().scale();
+                if (places > MAX_SCALE) {
+                    return -1;
+                }
+                scale = Math.max(scale, places);
+            }
+        }
+        return scale;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int writeVarint(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+}
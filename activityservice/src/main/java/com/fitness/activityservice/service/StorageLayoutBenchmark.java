@@ -0,0 +1,142 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Storage-layout comparison for the layout-benchmark profile. Reports collStats storage and index
+ * size of the regular and the time-series activity collection, then runs the same per-user range
+ * query and first-page query against both, alternating between them, and logs latency percentiles.
+ * Users are sampled from the regular collection, so both collections should hold the same data,
+ * e.g. after the activity.storage.migrate-from copy.
+ */
+@Slf4j
+@Component
+@Profile("layout-benchmark")
+public class StorageLayoutBenchmark implements ApplicationRunner {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${activity.storage.benchmark.regular:activities}")
+    private String regularCollection;
+
+    @Value("${activity.storage.benchmark.timeseries:activities_ts}")
+    private String timeSeriesCollection;
+
+    @Value("${activity.storage.benchmark.users:50}")
+    private int userCount;
+
+    @Value("${activity.storage.benchmark.queries:1000}")
+    private int queryCount;
+
+    @Value("${activity.storage.benchmark.range:30d}")
+    private Duration range;
+
+    @Value("${activity.storage.benchmark.page-size:20}")
+    private int pageSize;
+
+    public StorageLayoutBenchmark(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        reportSize(regularCollection);
+        reportSize(timeSeriesCollection);
+
+        List<String> users = sampleUsers();
+        if (users.isEmpty()) {
+            log.warn("Skipping layout benchmark queries, {} holds no activities", regularCollection);
+            return;
+        }
+
+        for (int i = 0; i < Math.min(queryCount, 200); i++) {
+            String userId = users.get(i % users.size());
+            rangeQuery(regularCollection, userId);
+            rangeQuery(timeSeriesCollection, userId);
+        }
+
+        List<Long> regularRange = new ArrayList<>(queryCount);
+        List<Long> timeSeriesRange = new ArrayList<>(queryCount);
+        List<Long> regularPage = new ArrayList<>(queryCount);
+        List<Long> timeSeriesPage = new ArrayList<>(queryCount);
+        for (int i = 0; i < queryCount; i++) {
+            String userId = users.get(ThreadLocalRandom.current().nextInt(users.size()));
+            regularRange.add(rangeQuery(regularCollection, userId));
+            timeSeriesRange.add(rangeQuery(timeSeriesCollection, userId));
+            regularPage.add(pageQuery(regularCollection, userId));
+            timeSeriesPage.add(pageQuery(timeSeriesCollection, userId));
+        }
+
+        reportLatency(regularCollection, "range", regularRange);
+        reportLatency(timeSeriesCollection, "range", timeSeriesRange);
+        reportLatency(regularCollection, "page", regularPage);
+        reportLatency(timeSeriesCollection, "page", timeSeriesPage);
+    }
+
+    private void reportSize(String collection) {
+        if (!mongoTemplate.collectionExists(collection)) {
+            log.warn("Layout benchmark: collection {} does not exist", collection);
+            return;
+        }
+        Document stats = mongoTemplate.executeCommand(new Document("collStats", collection));
+        log.info("Layout benchmark ({}): count={} storageSize={} bytes totalIndexSize={} bytes",
+                collection, stats.get("count"), stats.get("storageSize"), stats.get("totalIndexSize"));
+    }
+
+    private List<String> sampleUsers() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.sample(userCount * 20L),
+                Aggregation.group("userId"),
+                Aggregation.limit(userCount));
+        return mongoTemplate.aggregate(aggregation, regularCollection, Document.class).getMappedResults().stream()
+                .map(group -> group.getString("_id"))
+                .filter(userId -> userId != null)
+                .toList();
+    }
+
+    // what the stats rebuild and a date-filtered history read: every activity of one user in a window
+    private long rangeQuery(String collection, String userId) {
+        LocalDateTime to = LocalDateTime.now();
+        Query query = new Query(Criteria.where("userId").is(userId)
+                .and("startTime").gte(to.minus(range)).lt(to))
+                .with(Sort.by("startTime"));
+        long started = System.nanoTime();
+        mongoTemplate.find(query, Activity.class, collection);
+        return (System.nanoTime() - started) / 1000;
+    }
+
+    private long pageQuery(String collection, String userId) {
+        long started = System.nanoTime();
+        mongoTemplate.find(ActivityPageQuery.build(userId, null, pageSize, null), Activity.class, collection);
+        return (System.nanoTime() - started) / 1000;
+    }
+
+    private void reportLatency(String collection, String label, List<Long> micros) {
+        micros.sort(null);
+        log.info("Layout benchmark ({}, {}): p50={}us p90={}us p99={}us max={}us",
+                collection, label, percentile(micros, 50), percentile(micros, 90), percentile(micros, 99), percentile(micros, 100));
+    }
+
+    private long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
@@ -1,41 +1,104 @@
 package com.fitness.activityservice.service;
 
 
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class UserValidationService  {
 
     private final WebClient userServiceWebClient;
 
+    // Caffeine collapses concurrent misses for the same userId into a single in-flight call
+    private final AsyncLoadingCache<String, Boolean> validationCache;
+
+    public UserValidationService(WebClient userServiceWebClient,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${user.validation.cache.max-size:10000}") long maxSize,
+                                 @Value("${user.validation.cache.positive-ttl:10m}") Duration positiveTtl,
+                                 @Value("${user.validation.cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.userServiceWebClient = userServiceWebClient;
+        this.validationCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new ValidationExpiry(positiveTtl, negativeTtl))
+                .recordStats()
+                .buildAsync((userId, executor) -> fetchValidation(userId).toFuture());
+
+        CaffeineCacheMetrics.monitor(meterRegistry, validationCache, "user.validation");
+    }
+
     public boolean validateUser(String userId){
-    log.info("Calling User Validation API for UserId, {}", userId);
         try {
-            return Boolean.TRUE.equals(userServiceWebClient
-                    .get()
-                    .uri("/api/users/{userId}/validate", userId)
-                    .retrieve()
-                    .bodyToMono(Boolean.class)
-                    .block());
-        } catch (WebClientResponseException e) {
-
-            if(e.getStatusCode().equals(HttpStatus.SC_NOT_FOUND)) {
-                throw new RuntimeException("User Not Found: " + userId);
-            } else if (e.getStatusCode() == org.springframework.http.HttpStatus.BAD_REQUEST) {
-                throw new RuntimeException("Bad Request");
+            return Boolean.TRUE.equals(validationCache.get(userId).join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw e;
+        }
+    }
+
+    public Mono<Boolean> validateUserAsync(String userId){
+        return Mono.fromFuture(() -> validationCache.get(userId));
+    }
 
+    public void invalidate(String userId){
+        validationCache.synchronous().invalidate(userId);
+    }
+
+    public void invalidateAll(){
+        validationCache.synchronous().invalidateAll();
+    }
+
+    private Mono<Boolean> fetchValidation(String userId){
+        log.info("Calling User Validation API for UserId, {}", userId);
+        return userServiceWebClient
+                .get()
+                .uri("/api/users/{userId}/validate", userId)
+                .retrieve()
+                .bodyToMono(Boolean.class)
+                .map(Boolean.TRUE::equals)
+                .defaultIfEmpty(false)
+                .onErrorResume(WebClientResponseException.class, e -> {
+                    if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                        return Mono.error(new RuntimeException("User Not Found: " + userId));
+                    } else if (e.getStatusCode() == HttpStatus.BAD_REQUEST) {
+                        return Mono.error(new RuntimeException("Bad Request"));
+                    }
+                    // userservice failing is not an answer; failed loads are dropped, so only a real false is cached
+                    return Mono.error(new RuntimeException("User validation unavailable: " + e.getStatusCode()));
+                });
+    }
+
+    private record ValidationExpiry(Duration positiveTtl, Duration negativeTtl) implements Expiry<String, Boolean> {
+
+        @Override
+        public long expireAfterCreate(String userId, Boolean valid, long currentTime) {
+            return (valid ? positiveTtl : negativeTtl).toNanos();
         }
 
-        return false;
+        @Override
+        public long expireAfterUpdate(String userId, Boolean valid, long currentTime, long currentDuration) {
+            return expireAfterCreate(userId, valid, currentTime);
+        }
 
+        @Override
+        public long expireAfterRead(String userId, Boolean valid, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,116 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.model.ActivityType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load generator for the web-loadtest profile: fires concurrent activity POSTs at a running activity
+ * service and logs throughput and latency percentiles. Start it as a separate instance against a
+ * target started in servlet mode, then against one started with the reactive profile, with the same
+ * load settings. The client is a plain WebClient, not the load-balanced one, so the target is hit
+ * directly.
+ */
+@Slf4j
+@Component
+@Profile("web-loadtest")
+public class WebModeLoadTest implements ApplicationRunner {
+
+    @Value("${activity.web.loadtest.url:http://localhost:8082/api/activities}")
+    private String url;
+
+    @Value("${activity.web.loadtest.user-id}")
+    private String userId;
+
+    @Value("${activity.web.loadtest.requests:20000}")
+    private int requestCount;
+
+    @Value("${activity.web.loadtest.concurrency:200}")
+    private int concurrency;
+
+    @Value("${activity.web.loadtest.timeout:10s}")
+    private Duration timeout;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        WebClient client = WebClient.builder().baseUrl(url).build();
+        fire(client, Math.min(requestCount, 500), new ArrayList<>(), new AtomicInteger());
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>(requestCount));
+        AtomicInteger failures = new AtomicInteger();
+        long started = System.nanoTime();
+        fire(client, requestCount, latencies, failures);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        sorted.sort(null);
+        log.info("""
+                        Web load test finished against {}
+                          completed:   {}/{} ({} failed)
+                          throughput:  {} requests/s
+                          latency ms:  p50={} p90={} p99={} max={}""",
+                url, sorted.size(), requestCount, failures.get(),
+                String.format("%.1f", sorted.size() / seconds),
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 100));
+    }
+
+    private void fire(WebClient client, int count, List<Long> latencies, AtomicInteger failures) {
+        Flux.range(0, count)
+                .flatMap(i -> post(client, latencies, failures), concurrency)
+                .blockLast();
+    }
+
+    private Mono<Void> post(WebClient client, List<Long> latencies, AtomicInteger failures) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return client.post()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("X-User-Id", userId)
+                    .bodyValue(request())
+                    .retrieve()
+                    .toBodilessEntity()
+                    .timeout(timeout)
+                    .doOnSuccess(response -> latencies.add((System.nanoTime() - started) / 1_000_000))
+                    .then()
+                    .onErrorResume(e -> {
+                        failures.incrementAndGet();
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    private ActivityRequest request() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ActivityRequest request = new ActivityRequest();
+        request.setType(ActivityType.RUNNING);
+        request.setDuration(random.nextInt(10, 121));
+        request.setCaloriesBurned(random.nextInt(50, 1201));
+        request.setStartTime(LocalDateTime.now().minusMinutes(random.nextInt(0, 10_000)));
+        return request;
+    }
+
+    private long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
@@ -0,0 +1,154 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.config.CborMessageConverter;
+import com.fitness.activityservice.config.ThresholdGZipPostProcessor;
+import com.fitness.activityservice.dto.ActivityEvent;
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.model.ActivityType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.postprocessor.DelegatingDecompressingPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Message-size and serialization comparison for the wire-benchmark profile. Synthetic activity
+ * events go through the JSON and CBOR converters, each with and without gzip, and back through the
+ * decompressor the AI service uses; nothing is published. Two shapes are measured: the events the
+ * outbox sends today, with sample series reduced to their summaries by the mapper, and events that
+ * still carry the raw arrays, as they are published when activity.samples.min-length exceeds them.
+ */
+@Slf4j
+@Component
+@Profile("wire-benchmark")
+public class WireFormatBenchmark implements ApplicationRunner {
+
+    private final ActivityMapper activityMapper;
+    private final MessagePostProcessor gzip = new ThresholdGZipPostProcessor(0);
+    private final MessagePostProcessor decompress = new DelegatingDecompressingPostProcessor();
+
+    @Value("${activity.wire.benchmark.events:2000}")
+    private int eventCount;
+
+    @Value("${activity.wire.benchmark.samples:600}")
+    private int samplesPerSeries;
+
+    public WireFormatBenchmark(ActivityMapper activityMapper) {
+        this.activityMapper = activityMapper;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<ActivityEvent> summarized = new ArrayList<>(eventCount);
+        List<ActivityEvent> raw = new ArrayList<>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            ActivityRequest request = request();
+            ActivityEvent event = activityMapper.toEvent(activityMapper.toActivity(request));
+            summarized.add(event);
+            ActivityEvent unextracted = activityMapper.toEvent(activityMapper.toActivity(request));
+            unextracted.setAdditionalMetrics(request.getAdditionalMetrics());
+            raw.add(unextracted);
+        }
+
+        compare("summaries", summarized);
+        compare("raw arrays", raw);
+    }
+
+    private void compare(String shape, List<ActivityEvent> events) {
+        MessageConverter json = new Jackson2JsonMessageConverter();
+        MessageConverter cbor = new CborMessageConverter();
+        report(shape, "json", json, false, events);
+        report(shape, "json+gzip", json, true, events);
+        report(shape, "cbor", cbor, false, events);
+        report(shape, "cbor+gzip", cbor, true, events);
+    }
+
+    private void report(String shape, String label, MessageConverter converter, boolean compressed, List<ActivityEvent> events) {
+        for (int i = 0; i < Math.min(events.size(), 500); i++) {
+            converter.fromMessage(decompress.postProcessMessage(serialize(converter, compressed, events.get(i))));
+        }
+
+        long bytes = 0;
+        List<Long> serializeNanos = new ArrayList<>(events.size());
+        List<Long> deserializeNanos = new ArrayList<>(events.size());
+        for (ActivityEvent event : events) {
+            long started = System.nanoTime();
+            Message message = serialize(converter, compressed, event);
+            long serialized = System.nanoTime();
+            converter.fromMessage(decompress.postProcessMessage(message));
+            deserializeNanos.add(System.nanoTime() - serialized);
+            serializeNanos.add(serialized - started);
+            bytes += message.getBody().length;
+        }
+        serializeNanos.sort(null);
+        deserializeNanos.sort(null);
+        log.info("Wire benchmark ({}, {}): avgBytes={} serialize p50={}us p99={}us deserialize p50={}us p99={}us",
+                shape, label, bytes / events.size(),
+                micros(percentile(serializeNanos, 50)), micros(percentile(serializeNanos, 99)),
+                micros(percentile(deserializeNanos, 50)), micros(percentile(deserializeNanos, 99)));
+    }
+
+    private Message serialize(MessageConverter converter, boolean compressed, ActivityEvent event) {
+        Message message = converter.toMessage(event, new MessageProperties());
+        return compressed ? gzip.postProcessMessage(message) : message;
+    }
+
+    // heart rate and cadence as integers, pace with two decimals and a GPS track of [lat, lon] tuples
+    private ActivityRequest request() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Object> heartRate = new ArrayList<>(samplesPerSeries);
+        List<Object> cadence = new ArrayList<>(samplesPerSeries);
+        List<Object> pace = new ArrayList<>(samplesPerSeries);
+        List<Object> track = new ArrayList<>(samplesPerSeries);
+        long latitude = 525_200_000 + random.nextInt(100_000);
+        long longitude = 134_050_000 + random.nextInt(100_000);
+        for (int i = 0; i < samplesPerSeries; i++) {
+            heartRate.add(random.nextInt(110, 175));
+            cadence.add(random.nextInt(150, 185));
+            pace.add(random.nextInt(400, 650) / 100.0);
+            latitude += random.nextInt(-40, 41);
+            longitude += random.nextInt(-40, 41);
+            track.add(List.of(latitude / 1e7, longitude / 1e7));
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("heartRate", heartRate);
+        metrics.put("cadence", cadence);
+        metrics.put("pace", pace);
+        metrics.put("track", track);
+        metrics.put("device", "watch-" + random.nextInt(10));
+        metrics.put("notes", "easy run");
+
+        ActivityRequest request = new ActivityRequest();
+        request.setUserId("wire-benchmark-" + random.nextInt(1000));
+        request.setType(ActivityType.RUNNING);
+        request.setDuration(random.nextInt(20, 90));
+        request.setCaloriesBurned(random.nextInt(150, 900));
+        request.setStartTime(LocalDateTime.now().minusMinutes(random.nextInt(0, 10_000)));
+        request.setAdditionalMetrics(metrics);
+        return request;
+    }
+
+    private String micros(long nanos) {
+        return String.format("%.1f", nanos / 1000.0);
+    }
+
+    private long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
@@ -0,0 +1,65 @@
+package com.fitness.activityservice.config;
+
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.service.ActivityMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.event.AuditingEntityCallback;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveAuditingEntityCallback;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MongoAuditingTest {
+
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withUserConfiguration(MongoConfig.class)
+			.withBean(MongoMappingContext.class, MongoAuditingTest::mappingContext)
+			.withBean(ActivityMapper.class);
+
+	@Test
+	void servletAndReactiveSavesAreStampedAlike() {
+		contextRunner.run(context -> {
+			ActivityMapper mapper = context.getBean(ActivityMapper.class);
+
+			Activity servlet = (Activity) context.getBean(AuditingEntityCallback.class)
+					.onBeforeConvert(mapper.toActivity(request()), "activities");
+			Activity reactive = (Activity) Mono.from(context.getBean(ReactiveAuditingEntityCallback.class)
+					.onBeforeConvert(mapper.toActivity(request()), "activities"))
+					.block();
+
+			ActivityResponse servletResponse = mapper.toResponse(servlet);
+			ActivityResponse reactiveResponse = mapper.toResponse(reactive);
+			assertThat(servletResponse.getCreatedAt()).isNotNull();
+			assertThat(servletResponse.getUpdatedAt()).isNotNull();
+			assertThat(reactiveResponse.getCreatedAt()).isNotNull();
+			assertThat(reactiveResponse.getUpdatedAt()).isNotNull();
+			assertThat(reactiveResponse).usingRecursiveComparison()
+					.ignoringFields("createdAt", "updatedAt")
+					.isEqualTo(servletResponse);
+		});
+	}
+
+	// java.time values are simple types only through the custom conversions, as in the Boot-configured context
+	private static MongoMappingContext mappingContext() {
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+		return mappingContext;
+	}
+
+	private static ActivityRequest request() {
+		ActivityRequest request = new ActivityRequest();
+		request.setUserId("u1");
+		request.setType(ActivityType.RUNNING);
+		request.setDuration(30);
+		request.setCaloriesBurned(300);
+		return request;
+	}
+}
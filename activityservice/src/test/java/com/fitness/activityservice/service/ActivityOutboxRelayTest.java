@@ -0,0 +1,134 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.OutboxStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ActivityOutboxRelayTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+	private final RabbitOperations operations = mock(RabbitOperations.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final ActivityOutboxRelay relay =
+			new ActivityOutboxRelay(mongoTemplate, rabbitTemplate, new ActivityMapper(), meterRegistry);
+	private final Deque<List<Activity>> candidates = new ArrayDeque<>();
+	private final List<Activity> won = List.of(activity("a1"));
+
+	ActivityOutboxRelayTest() {
+		ReflectionTestUtils.setField(relay, "exchange", "fitness.exchange");
+		ReflectionTestUtils.setField(relay, "routingKey", "activity.tracking");
+		ReflectionTestUtils.setField(relay, "bulkRoutingKey", "activity.tracking.bulk");
+		ReflectionTestUtils.setField(relay, "batchSize", 200);
+		ReflectionTestUtils.setField(relay, "confirmTimeout", Duration.ofSeconds(5));
+		ReflectionTestUtils.setField(relay, "claimTtl", Duration.ofMinutes(1));
+
+		// the id-only projection is the candidate scan; the other find reads back the rows this instance claimed
+		when(mongoTemplate.find(any(Query.class), eq(Activity.class))).thenAnswer(invocation -> {
+			Query query = invocation.getArgument(0);
+			if (query.getFieldsObject().containsKey("id")) {
+				return candidates.isEmpty() ? List.of() : candidates.poll();
+			}
+			return won;
+		});
+		when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class)))
+				.thenAnswer(invocation -> invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(operations));
+	}
+
+	@Test
+	void claimsOnlyUnclaimedOrExpiredRowsForClaimTtl() {
+		candidates.add(List.of(activity("a1"), activity("a2")));
+		LocalDateTime before = LocalDateTime.now();
+
+		relay.relay();
+
+		List<Update> updates = updates(2);
+		Document claim = updates.get(0).getUpdateObject().get("$set", Document.class);
+		assertThat(claim.getString("eventClaimedBy")).isNotBlank();
+		assertThat((LocalDateTime) claim.get("eventClaimedUntil"))
+				.isAfterOrEqualTo(before.plusMinutes(1))
+				.isBeforeOrEqualTo(LocalDateTime.now().plusMinutes(1));
+
+		ArgumentCaptor<Query> claimQuery = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate, times(2)).updateMulti(claimQuery.capture(), any(Update.class), eq(Activity.class));
+		Document claimCriteria = claimQuery.getAllValues().get(0).getQueryObject();
+		assertThat(claimCriteria.get("eventStatus")).isEqualTo(OutboxStatus.PENDING);
+		List<?> claimable = claimCriteria.getList("$or", Document.class);
+		assertThat(claimable).hasSize(2);
+		assertThat(claimable.get(0)).isEqualTo(new Document("eventClaimedUntil", null));
+		assertThat(((Document) claimable.get(1)).get("eventClaimedUntil", Document.class)).containsKey("$lt");
+	}
+
+	@Test
+	void marksOnlyTheClaimedRowsSentAfterTheBrokerConfirms() {
+		candidates.add(List.of(activity("a1"), activity("a2")));
+
+		relay.relay();
+
+		verify(operations).convertAndSend(eq("fitness.exchange"), eq("activity.tracking"), any(Object.class),
+				any(MessagePostProcessor.class));
+		verify(operations).waitForConfirmsOrDie(5000);
+		Document sent = updates(2).get(1).getUpdateObject().get("$set", Document.class);
+		assertThat(sent.get("eventStatus")).isEqualTo(OutboxStatus.SENT);
+		assertThat(meterRegistry.counter("activity.outbox.published").count()).isEqualTo(1);
+	}
+
+	@Test
+	void unconfirmedBatchGivesItsClaimBack() {
+		candidates.add(List.of(activity("a1")));
+		doThrow(new IllegalStateException("nacked")).when(operations).waitForConfirmsOrDie(anyLong());
+
+		relay.relay();
+
+		Update release = updates(2).get(1);
+		assertThat(release.getUpdateObject().get("$unset", Document.class)).containsKeys("eventClaimedBy", "eventClaimedUntil");
+		assertThat(release.getUpdateObject()).doesNotContainKey("$set");
+		assertThat(meterRegistry.counter("activity.outbox.publish.failures").count()).isEqualTo(1);
+		assertThat(meterRegistry.counter("activity.outbox.published").count()).isZero();
+	}
+
+	@Test
+	void nothingIsClaimedWhenNoEventIsPending() {
+		relay.relay();
+
+		verify(mongoTemplate, times(0)).updateMulti(any(Query.class), any(Update.class), eq(Activity.class));
+		verify(operations, times(0)).convertAndSend(anyString(), anyString(), any(Object.class), any(MessagePostProcessor.class));
+	}
+
+	private List<Update> updates(int expected) {
+		ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate, times(expected)).updateMulti(any(Query.class), updates.capture(), eq(Activity.class));
+		return updates.getAllValues();
+	}
+
+	private static Activity activity(String id) {
+		return Activity.builder().id(id).userId("u1").eventStatus(OutboxStatus.PENDING).build();
+	}
+}
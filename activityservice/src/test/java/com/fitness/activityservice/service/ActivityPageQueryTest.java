@@ -0,0 +1,65 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ActivityPageQueryTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(2025, 3, 14, 7, 30);
+
+	@Test
+	void firstPageFiltersByUserOnly() {
+		Query query = ActivityPageQuery.build("u1", null, 20, null);
+
+		assertThat(query.getQueryObject()).isEqualTo(new Document("userId", "u1"));
+		assertThat(query.getSortObject()).isEqualTo(new Document("startTime", -1).append("id", -1));
+		assertThat(query.getLimit()).isEqualTo(20);
+		assertThat(query.getFieldsObject()).isEmpty();
+	}
+
+	@Test
+	void cursorContinuesAfterTheLastRow() {
+		String cursor = ActivityPageQuery.encodeCursor(Activity.builder().id("a9").startTime(START).build());
+
+		Document filter = ActivityPageQuery.build("u1", cursor, 20, null).getQueryObject();
+
+		assertThat(filter.get("userId")).isEqualTo("u1");
+		assertThat(filter.getList("$or", Document.class)).containsExactly(
+				new Document("startTime", new Document("$lt", START)),
+				new Document("startTime", START).append("id", new Document("$lt", "a9")),
+				new Document("startTime", null));
+	}
+
+	@Test
+	void cursorWithoutStartTimeStaysAmongUndatedRows() {
+		String cursor = ActivityPageQuery.encodeCursor(Activity.builder().id("a9").build());
+
+		Document filter = ActivityPageQuery.build("u1", cursor, 20, null).getQueryObject();
+
+		assertThat(filter).isEqualTo(new Document("userId", "u1")
+				.append("startTime", null)
+				.append("id", new Document("$lt", "a9")));
+	}
+
+	@Test
+	void projectsOnlyKnownFieldsPlusCursorKeys() {
+		Query query = ActivityPageQuery.build("u1", null, 20, List.of("type", "duration", "samples", "password"));
+
+		assertThat(query.getFieldsObject().keySet()).containsExactlyInAnyOrder("id", "startTime", "type", "duration");
+	}
+
+	@Test
+	void rejectsMalformedCursor() {
+		assertThatThrownBy(() -> ActivityPageQuery.build("u1", "not a cursor", 20, null))
+				.isInstanceOf(RuntimeException.class)
+				.hasMessageContaining("Invalid cursor");
+	}
+}
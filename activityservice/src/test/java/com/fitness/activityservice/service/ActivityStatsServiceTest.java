@@ -0,0 +1,150 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityStats;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.StatsGranularity;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ActivityStatsServiceTest {
+
+	private static final LocalDateTime WEDNESDAY = LocalDateTime.of(2025, 3, 12, 7, 30);
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final BulkOperations operations = mock(BulkOperations.class, RETURNS_SELF);
+	private final ActivityStatsService statsService = new ActivityStatsService(mongoTemplate);
+
+	ActivityStatsServiceTest() {
+		ReflectionTestUtils.setField(statsService, "rebuildSettle", Duration.ofMinutes(1));
+		ReflectionTestUtils.setField(statsService, "rebuildAttempts", 3);
+		when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityStats.class)).thenReturn(operations);
+	}
+
+	@Test
+	void recordIncrementsEveryGranularityAndTheVersion() {
+		statsService.record(List.of(activity(WEDNESDAY)));
+
+		ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+		verify(operations, times(3)).upsert(queries.capture(), updates.capture());
+		verify(operations).execute();
+
+		assertThat(queries.getAllValues()).extracting(query -> query.getQueryObject().get("id")).containsExactly(
+				"u1:DAY:2025-03-12", "u1:WEEK:2025-03-10", "u1:MONTH:2025-03-01");
+		Document increments = updates.getValue().getUpdateObject().get("$inc", Document.class);
+		assertThat(increments)
+				.containsEntry("version", 1)
+				.containsEntry("count", 1)
+				.containsEntry("totalDuration", 30L)
+				.containsEntry("totalCalories", 300L)
+				.containsEntry("byType.RUNNING.count", 1);
+	}
+
+	@Test
+	void rebuildWritesEachBucketAtTheVersionItRead() {
+		existing(bucket(StatsGranularity.DAY, LocalDate.of(2025, 3, 12), 4), bucket(StatsGranularity.DAY, LocalDate.of(2025, 2, 1), 2));
+		activities(activity(WEDNESDAY));
+		when(operations.execute()).thenReturn(result(2, 1, 1));
+
+		statsService.rebuild("u1");
+
+		ArgumentCaptor<Query> replaced = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Object> replacement = ArgumentCaptor.forClass(Object.class);
+		verify(operations).replaceOne(replaced.capture(), replacement.capture());
+		assertThat(replaced.getValue().getQueryObject())
+				.isEqualTo(new Document("id", "u1:DAY:2025-03-12").append("version", 4L));
+		ActivityStats day = (ActivityStats) replacement.getValue();
+		assertThat(day.getCount()).isEqualTo(1);
+		assertThat(day.getVersion()).isEqualTo(4);
+
+		ArgumentCaptor<Object> inserted = ArgumentCaptor.forClass(Object.class);
+		verify(operations, times(2)).insert(inserted.capture());
+		assertThat(inserted.getAllValues()).extracting(stats -> ((ActivityStats) stats).getId())
+				.containsExactlyInAnyOrder("u1:WEEK:2025-03-10", "u1:MONTH:2025-03-01");
+
+		ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+		verify(operations).remove(removed.capture());
+		assertThat(removed.getValue().getQueryObject())
+				.isEqualTo(new Document("id", "u1:DAY:2025-02-01").append("version", 2L));
+		verify(mongoTemplate, times(1)).stream(any(Query.class), eq(Activity.class));
+	}
+
+	@Test
+	void rebuildRunsAgainWhenABucketMovedUnderIt() {
+		existing(bucket(StatsGranularity.DAY, LocalDate.of(2025, 3, 12), 4));
+		activities(activity(WEDNESDAY));
+		when(operations.execute()).thenReturn(result(2, 0, 0), result(2, 1, 0));
+
+		statsService.rebuild("u1");
+
+		verify(operations, times(2)).execute();
+		verify(mongoTemplate, times(2)).stream(any(Query.class), eq(Activity.class));
+	}
+
+	@Test
+	void rebuildLeavesBucketsWithRecentActivitiesAlone() {
+		Activity recent = activity(WEDNESDAY);
+		recent.setCreatedAt(LocalDateTime.now());
+		activities(recent);
+
+		statsService.rebuild("u1");
+
+		verify(operations, never()).insert(any(Object.class));
+		verify(operations, never()).execute();
+	}
+
+	private void existing(ActivityStats... buckets) {
+		when(mongoTemplate.find(any(Query.class), eq(ActivityStats.class))).thenReturn(List.of(buckets));
+	}
+
+	private void activities(Activity... activities) {
+		when(mongoTemplate.stream(any(Query.class), eq(Activity.class))).thenAnswer(invocation -> Stream.of(activities));
+	}
+
+	private static Activity activity(LocalDateTime startTime) {
+		return Activity.builder()
+				.id("a1")
+				.userId("u1")
+				.type(ActivityType.RUNNING)
+				.duration(30)
+				.caloriesBurned(300)
+				.startTime(startTime)
+				.createdAt(startTime)
+				.build();
+	}
+
+	private static ActivityStats bucket(StatsGranularity granularity, LocalDate bucketStart, long version) {
+		return ActivityStats.builder()
+				.id(ActivityStats.idFor("u1", granularity, bucketStart))
+				.version(version)
+				.build();
+	}
+
+	private static BulkWriteResult result(int inserted, int matched, int removed) {
+		return BulkWriteResult.acknowledged(inserted, matched, removed, matched, List.of(), List.of());
+	}
+}
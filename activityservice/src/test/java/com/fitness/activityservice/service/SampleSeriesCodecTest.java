@@ -0,0 +1,93 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.SampleSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SampleSeriesCodecTest {
+
+	@Test
+	void restoresHeartRateExactly() {
+		List<Object> heartRate = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			heartRate.add(120L + i % 7);
+		}
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("heartRate", heartRate);
+		metrics.put("notes", "easy run");
+
+		SampleSeriesCodec.Extracted extracted = SampleSeriesCodec.extract(metrics, 10);
+
+		assertThat(extracted.samples()).hasSize(1);
+		assertThat(extracted.metrics().get("heartRate")).isInstanceOf(Map.class);
+		assertThat(extracted.metrics().get("notes")).isEqualTo("easy run");
+		assertThat(SampleSeriesCodec.restore(extracted.metrics(), extracted.samples())).isEqualTo(metrics);
+	}
+
+	@Test
+	void scalesEachColumnOnItsOwn() {
+		List<Object> points = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			points.add(List.of(1_700_000_000_123L + i * 1000L, (525_200_066 + i) / 1e7));
+		}
+		Map<String, Object> metrics = Map.of("track", points);
+
+		SampleSeriesCodec.Extracted extracted = SampleSeriesCodec.extract(metrics, 10);
+
+		assertThat(extracted.samples()).hasSize(1);
+		SampleSeries series = extracted.samples().get(0);
+		assertThat(series.getScales()).containsExactly(0, 7);
+		double[][] columns = SampleSeriesCodec.decode(series);
+		for (int i = 0; i < points.size(); i++) {
+			List<?> point = (List<?>) points.get(i);
+			assertThat(columns[0][i]).isEqualTo(((Number) point.get(0)).doubleValue());
+			assertThat(columns[1][i]).isEqualTo(((Number) point.get(1)).doubleValue());
+		}
+	}
+
+	@Test
+	void keepsWholeDecimalsAsDoubles() {
+		List<Object> splits = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			splits.add(List.of(i, 300.0 + i % 3 * 0.5));
+		}
+		Map<String, Object> metrics = Map.of("splits", splits);
+
+		SampleSeriesCodec.Extracted extracted = SampleSeriesCodec.extract(metrics, 10);
+
+		assertThat(extracted.samples().get(0).getFloating()).containsExactly(false, true);
+		List<?> restored = (List<?>) SampleSeriesCodec.restore(extracted.metrics(), extracted.samples()).get("splits");
+		assertThat(restored.get(0)).isEqualTo(List.of(0L, 300.0));
+		assertThat(restored.get(1)).isEqualTo(List.of(1L, 300.5));
+	}
+
+	@Test
+	void leavesUnrepresentableArraysPlain() {
+		List<Object> tooLarge = new ArrayList<>();
+		List<Object> tooPrecise = new ArrayList<>();
+		List<Object> notFinite = new ArrayList<>();
+		List<Object> mixedTypes = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			tooLarge.add(List.of(1e18 + i, 0.5));
+			tooPrecise.add(0.123456789 + i);
+			notFinite.add(i == 10 ? Double.NaN : (double) i);
+			mixedTypes.add(i == 10 ? (Object) 10.5 : (Object) i);
+		}
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("tooLarge", tooLarge);
+		metrics.put("tooPrecise", tooPrecise);
+		metrics.put("notFinite", notFinite);
+		metrics.put("mixedTypes", mixedTypes);
+
+		SampleSeriesCodec.Extracted extracted = SampleSeriesCodec.extract(metrics, 10);
+
+		assertThat(extracted.samples()).isNull();
+		assertThat(extracted.metrics()).isEqualTo(metrics);
+	}
+}
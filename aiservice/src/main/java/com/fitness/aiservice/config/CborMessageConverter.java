@@ -0,0 +1,39 @@
+package com.fitness.aiservice.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJackson2MessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+
+public class CborMessageConverter extends AbstractJackson2MessageConverter {
+
+    public static final String CONTENT_TYPE_CBOR = "application/cbor";
+
+    public CborMessageConverter() {
+        super(CBORMapper.builder()
+                        .findAndAddModules()
+                        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                        .build(),
+                MimeType.valueOf(CONTENT_TYPE_CBOR), "*");
+    }
+
+    // the base class reads the body as a String unless the content type names a charset, which CBOR has not
+    @Override
+    public Object fromMessage(Message message, Object conversionHint) throws MessageConversionException {
+        MessageProperties properties = message.getMessageProperties();
+        if (properties == null || properties.getContentType() == null
+                || !MimeType.valueOf(properties.getContentType()).equalsTypeAndSubtype(getSupportedContentType())) {
+            return super.fromMessage(message, conversionHint);
+        }
+        try {
+            return objectMapper.readValue(message.getBody(), getJavaTypeMapper().toJavaType(properties));
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to convert CBOR message content", e);
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.fitness.aiservice.config;
 
+import com.fitness.aiservice.service.RecommendationRetryService;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Base64UrlNamingStrategy;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.postprocessor.DelegatingDecompressingPostProcessor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 @Configuration
 public class RabbitMQConfig {
@@ -26,6 +42,25 @@ public class RabbitMQConfig {
     @Value("${rabbitmq.routing.key}")
     private String routingKey;
 
+    @Value("${rabbitmq.queue.bulk-name:activity.bulk.queue}")
+    private String bulkQueue;
+
+    @Value("${rabbitmq.routing.bulk-key:activity.tracking.bulk}")
+    private String bulkRoutingKey;
+
+    @Value("${ai.retry.dead-letter-queue:activity.dlq}")
+    private String deadLetterQueue;
+
+    @Value("${ai.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${ai.events.exchange:recommendation.events}")
+    private String eventsExchange;
+
+    // per queue, so a bulk backlog can never fill the interactive lane's share of the buffer
+    @Value("${ai.pipeline.prefetch:64}")
+    private int prefetch;
+
     @Bean
     public Queue activityQueue(){
         return new Queue(queue, true);
@@ -33,9 +68,45 @@ public class RabbitMQConfig {
     }
 
 
+    @Bean
+    public Queue activityBulkQueue(){
+        return new Queue(bulkQueue, true);
+    }
+
+    // one delay queue per lane and attempt; expired messages dead-letter straight back to the lane queue
+    @Bean
+    public Declarables retryQueues(){
+        List<Declarable> declarables = new ArrayList<>();
+        for (String laneQueue : List.of(queue, bulkQueue)) {
+            for (int attempt = 1; attempt < maxAttempts; attempt++) {
+                declarables.add(QueueBuilder.durable(RecommendationRetryService.retryQueueName(laneQueue, attempt))
+                        .deadLetterExchange("")
+                        .deadLetterRoutingKey(laneQueue)
+                        .build());
+            }
+        }
+        declarables.add(QueueBuilder.durable(deadLetterQueue).build());
+        return new Declarables(declarables);
+    }
+
+    // picks the codec from each message's content type, so json and cbor producers can coexist during upgrades
     @Bean
     public  MessageConverter jsonMessageConverter(){
-        return new Jackson2JsonMessageConverter();
+        ContentTypeDelegatingMessageConverter converter = new ContentTypeDelegatingMessageConverter(new Jackson2JsonMessageConverter());
+        converter.addDelegate(CborMessageConverter.CONTENT_TYPE_CBOR, new CborMessageConverter());
+        return converter;
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                               ConnectionFactory connectionFactory){
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAfterReceivePostProcessors(new DelegatingDecompressingPostProcessor());
+        // RecommendationPipeline acks after the save; prefetch bounds what its fair scheduler buffers
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(prefetch);
+        return factory;
     }
 
 
@@ -50,6 +121,30 @@ public class RabbitMQConfig {
         return BindingBuilder.bind(activityQueue).to(activityExchange).with(routingKey);
     }
 
+    @Bean
+    public Binding activityBulkBinding(Queue activityBulkQueue, DirectExchange activityExchange)
+    {
+        return BindingBuilder.bind(activityBulkQueue).to(activityExchange).with(bulkRoutingKey);
+    }
+
+    // every instance gets every saved recommendation, so SSE subscribers are served wherever they connected
+    @Bean
+    public FanoutExchange recommendationEventsExchange(){
+        return new FanoutExchange(eventsExchange);
+    }
+
+    // exclusive and auto-delete: one per running instance, gone when it disconnects
+    @Bean
+    public AnonymousQueue recommendationEventsQueue(){
+        return new AnonymousQueue(new Base64UrlNamingStrategy(eventsExchange + "."));
+    }
+
+    @Bean
+    public Binding recommendationEventsBinding(AnonymousQueue recommendationEventsQueue, FanoutExchange recommendationEventsExchange)
+    {
+        return BindingBuilder.bind(recommendationEventsQueue).to(recommendationEventsExchange);
+    }
+
 
 
 
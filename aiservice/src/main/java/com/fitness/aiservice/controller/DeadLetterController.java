@@ -0,0 +1,34 @@
+package com.fitness.aiservice.controller;
+
+
+import com.fitness.aiservice.service.RecommendationRetryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/recommendations/dead-letters")
+@RequiredArgsConstructor
+public class DeadLetterController {
+
+    private final RecommendationRetryService retryService;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Long>> getDeadLetterCount()
+    {
+        return ResponseEntity.ok(Map.of("count", retryService.deadLetterCount()));
+    }
+
+    // moves up to limit dead-lettered activities back to their queue with a fresh attempt count
+    @PostMapping("/replay")
+    public ResponseEntity<Map<String, Integer>> replay(@RequestParam(defaultValue = "100") int limit)
+    {
+        return ResponseEntity.ok(Map.of("replayed", retryService.replay(Math.max(1, Math.min(limit, 1000)))));
+    }
+}
@@ -1,14 +1,19 @@
 package com.fitness.aiservice.controller;
 
 
+import com.fitness.aiservice.dto.RecommendationPage;
 import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.service.RecommendationNotifier;
 import com.fitness.aiservice.service.RecommendationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -19,15 +24,38 @@ public class RecommendationController {
     @Autowired
     private RecommendationService recommendationService;
 
+    @Autowired
+    private RecommendationNotifier recommendationNotifier;
+
     @GetMapping("/users/{userId}")
     public ResponseEntity<List<Recommendation>> getUserRecommendation(@PathVariable String userId)
     {
         return ResponseEntity.ok(recommendationService.getUserRecommendation(userId));
     }
 
+    @GetMapping("/users/{userId}/page")
+    public ResponseEntity<RecommendationPage> getUserRecommendationPage(@PathVariable String userId,
+                                                                        @RequestParam(required = false) String cursor,
+                                                                        @RequestParam(defaultValue = "20") int limit)
+    {
+        return ResponseEntity.ok(recommendationService.getUserRecommendationPage(userId, cursor, limit));
+    }
+
     @GetMapping("/activity/{activityId}")
     public ResponseEntity<Recommendation> getActivityRecommendation(@PathVariable String activityId)
     {
-        return ResponseEntity.ok(recommendationService.getActivityRecommendation(activityId));
+        return recommendationService.getActivityRecommendation(activityId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // one "recommendation" event as soon as it is saved (or straight away if it already was), then the stream closes
+    @GetMapping(value = "/activity/{activityId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToActivityRecommendation(@PathVariable String activityId)
+    {
+        SseEmitter emitter = recommendationNotifier.subscribe(activityId);
+        recommendationService.getActivityRecommendation(activityId)
+                .ifPresent(recommendation -> recommendationNotifier.send(emitter, recommendation));
+        return emitter;
     }
 }
@@ -0,0 +1,21 @@
+package com.fitness.aiservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecommendationSummary {
+
+    private String id;
+    private String activityId;
+    private String activityType;
+    private LocalDateTime createdAt;
+    private String firstLine;
+}
@@ -0,0 +1,29 @@
+package com.fitness.aiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Document(collection = "recommendation_cache")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedRecommendation {
+
+    private String id;
+    private String activityType;
+    private String recommendation;
+    private List<String> improvements;
+    private List<String> suggestions;
+    private List<String> safety;
+
+    @Indexed(expireAfter = "#{@environment.getProperty('ai.cache.persistent-ttl', '30d')}")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,7 @@
+package com.fitness.aiservice.model;
+
+// interactive events are consumed ahead of bulk imports and backfills
+public enum EventLane {
+    INTERACTIVE,
+    BULK
+}
@@ -1,23 +1,27 @@
 package com.fitness.aiservice.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection="recommendations")
+@CompoundIndex(name = "user_createdAt_id", def = "{'userId': 1, 'createdAt': -1, '_id': -1}")
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Recommendation {
 
-    private String Id;
+    private String id;
+    // unique index built by RecommendationIndexes
     private String activityId;
     private String userId;
     private String activityType;
@@ -27,4 +31,18 @@ public class Recommendation {
     private List<String> safety;
     private LocalDateTime createdAt;
 
+    // storage format 1 (see RecommendationCodec); absent on documents written as plain text
+    @JsonIgnore
+    private Integer storageFormat;
+    @JsonIgnore
+    private String firstLine;
+    @JsonIgnore
+    private byte[] recommendationDeflated;
+    @JsonIgnore
+    private List<String> improvementIds;
+    @JsonIgnore
+    private List<String> suggestionIds;
+    @JsonIgnore
+    private List<String> safetyIds;
+
 }
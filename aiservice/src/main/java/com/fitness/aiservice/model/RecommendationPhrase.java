@@ -0,0 +1,22 @@
+package com.fitness.aiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Document(collection = "recommendation_phrases")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecommendationPhrase {
+
+    // content hash of the text, so the same phrase always gets the same id
+    private String id;
+    private String text;
+    private LocalDateTime createdAt;
+}
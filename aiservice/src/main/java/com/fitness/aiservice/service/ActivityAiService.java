@@ -1,88 +1,261 @@
 package com.fitness.aiservice.service;
 
 
+import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fitness.aiservice.model.Activity;
 import com.fitness.aiservice.model.Recommendation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ActivityAiService {
 
+    // thread-safe once configured; model answers may carry raw newlines inside strings
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+            .build();
+
     private final GeminiService geminiService;
+    private final RecommendationCache recommendationCache;
+    private final RecommendationService recommendationService;
+    private final PromptTemplates promptTemplates;
+    private final AiPipelineMetrics metrics;
+
+    @Value("${gemini.streaming.enabled:false}")
+    private boolean streamingEnabled;
 
+    // share of raw AI responses logged, and how much of each
+    @Value("${ai.logging.body-sample-rate:0.01}")
+    private double bodySampleRate;
+
+    @Value("${ai.logging.body-max-chars:2000}")
+    private int bodyMaxChars;
 
     public Recommendation generateRecommendation(Activity activity){
 
-        String prompt = createPromptForAiActivity(activity);
+        String fingerprint = recommendationCache.fingerprint(activity);
+        Optional<Recommendation> cached = recommendationCache.lookup(fingerprint, activity);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
 
-        String aiResponse = geminiService.getAnswer(prompt);
+        PromptTemplates.Prompt prompt = promptTemplates.render(PromptTemplates.ACTIVITY,
+                Map.of("activity", describeActivity(activity)));
 
-        log.info("Response From ai {}", aiResponse );
+        if (streamingEnabled) {
+            return streamRecommendation(activity, prompt, fingerprint);
+        }
+
+        String aiResponse = geminiService.getAnswer(prompt.text(), prompt.cachedContent());
 
+        if (ThreadLocalRandom.current().nextDouble() < bodySampleRate) {
+            log.info("Sampled response from ai for activity {}: {}", activity.getId(), bounded(aiResponse));
+        }
 
-        return   processAiResposne(activity, aiResponse);
+        return   processAiResposne(activity, aiResponse, fingerprint);
     }
 
 
-    private Recommendation processAiResposne(Activity activity, String aiResponse){
+    private Recommendation processAiResposne(Activity activity, String aiResponse, String fingerprint){
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode rootNode = mapper.readTree(aiResponse);
-
-            JsonNode textNode = rootNode.path("candidates")
-                    .get(0)
-                    .path("content")
-                    .path("parts")
-                    .get(0)
-                    .path("text");
-
-            String jsonContent = textNode.asText()
-                    .replaceAll("json\\n", "")
-                    .replaceAll("\\n","")
-                    .replaceAll("`","")
-                    .trim();
-
-//            log.info("PARSED RESPONSE FROM AI: {}", jsonContent);
-
-            JsonNode analysisJson= mapper.readTree(jsonContent);
-            JsonNode analysisNode = analysisJson.path("analysis");
-            StringBuilder fullAnalysis = new StringBuilder();
-            addAnalysisSection(fullAnalysis, analysisNode, "overall", "Overall");
-            addAnalysisSection(fullAnalysis, analysisNode, "pace", "Pace");
-            addAnalysisSection(fullAnalysis, analysisNode, "hearRate", "Heart Rate");
-            addAnalysisSection(fullAnalysis, analysisNode, "caloriesBurned", "Calories Burned ");
-
-            List<String> improvements = extractImprovements(analysisJson.path("improvements"));
-            List<String> suggestions = extractSuggestions(analysisJson.path("suggestions"));
-            List<String> safety = extractSafetyGuideLines(analysisJson.path("safety"));
-
-
-            return Recommendation.builder()
-                    .activityId(activity.getId())
-                    .userId(activity.getUserId())
-                    .activityType(activity.getType())
-                    .recommendation(fullAnalysis.toString().trim())
-                    .improvements(improvements)
-                    .suggestions(suggestions)
-                    .safety(safety)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-
+            Recommendation recommendation = parseAiResponse(activity, aiResponse);
+            // only successful analyses are cached, never the default fallback
+            recommendationCache.store(fingerprint, recommendation);
+            return recommendation;
         } catch (Exception e) {
-            e.printStackTrace();
+            // the model answered but not in the expected shape; retrying rarely helps, so fall back
+            metrics.parseFailure("single");
+            log.warn("Could not parse AI response for activity {}, using the default recommendation: {} (response: {})",
+                    activity.getId(), e.getMessage(), bounded(aiResponse));
         }
+        metrics.fallback("unparseable");
         return  createDefaultRecommendation(activity);
     }
 
+    /*
+     * Streaming path: answer fragments are fed straight into the token parser, and each top-level
+     * section is written to the activity's recommendation document as soon as it closes. The final
+     * save then replaces that document with the complete recommendation (or the default one).
+     */
+    private Recommendation streamRecommendation(Activity activity, PromptTemplates.Prompt prompt, String fingerprint) {
+        ObjectNode analysisJson = MAPPER.createObjectNode();
+        StreamingRecommendationParser parser;
+        try {
+            parser = new StreamingRecommendationParser(MAPPER, (section, node) -> {
+                analysisJson.set(section, node);
+                persistSection(activity, section, node);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // parse failures must not count against Gemini, so they are kept out of the stream callback
+        IOException[] parseFailure = new IOException[1];
+        JsonNode usage = geminiService.streamAnswer(prompt.text(), prompt.cachedContent(), text -> {
+            if (parseFailure[0] == null) {
+                try {
+                    parser.feed(text);
+                } catch (IOException e) {
+                    parseFailure[0] = e;
+                }
+            }
+        });
+        metrics.recordUsage(usage);
+
+        if (parseFailure[0] != null || !parser.isComplete()) {
+            log.warn("Streamed AI response for activity {} was incomplete or malformed: {}",
+                    activity.getId(), parseFailure[0] == null ? "no closing brace" : parseFailure[0].getMessage());
+            metrics.parseFailure("stream");
+            metrics.fallback("unparseable");
+            return createDefaultRecommendation(activity);
+        }
+
+        Recommendation recommendation = toRecommendation(activity, analysisJson);
+        recommendationCache.store(fingerprint, recommendation);
+        return recommendation;
+    }
+
+    private void persistSection(Activity activity, String section, JsonNode node) {
+        try {
+            switch (section) {
+                case "analysis" -> recommendationService.saveSection(activity, "recommendation", analysisText(node));
+                case "improvements" -> recommendationService.saveSection(activity, "improvements", extractImprovements(node));
+                case "suggestions" -> recommendationService.saveSection(activity, "suggestions", extractSuggestions(node));
+                case "safety" -> recommendationService.saveSection(activity, "safety", extractSafetyGuideLines(node));
+                default -> { }
+            }
+        } catch (RuntimeException e) {
+            // the final save still carries every section
+            log.warn("Failed to persist {} section for activity {}: {}", section, activity.getId(), e.getMessage());
+        }
+    }
+
+    private Recommendation parseAiResponse(Activity activity, String aiResponse) throws Exception {
+        String jsonContent = extractResponseText(aiResponse);
+
+//        log.info("PARSED RESPONSE FROM AI: {}", jsonContent);
+
+        return toRecommendation(activity, MAPPER.readTree(jsonContent));
+    }
+
+    // the answer text is a JSON object, possibly wrapped in a ```json fence; everything outside its braces is dropped
+    private String extractResponseText(String aiResponse) throws Exception {
+        JsonNode rootNode = MAPPER.readTree(aiResponse);
+        metrics.recordUsage(rootNode.path("usageMetadata"));
+
+        String text = rootNode.path("candidates")
+                .get(0)
+                .path("content")
+                .path("parts")
+                .get(0)
+                .path("text")
+                .asText();
+        int start = text.indexOf('{');
+        int end = text.lastIndexOf('}');
+        return start < 0 || end < start ? text.strip() : text.substring(start, end + 1);
+    }
+
+    private Recommendation toRecommendation(Activity activity, JsonNode analysisJson) {
+        String fullAnalysis = analysisText(analysisJson.path("analysis"));
+
+        List<String> improvements = extractImprovements(analysisJson.path("improvements"));
+        List<String> suggestions = extractSuggestions(analysisJson.path("suggestions"));
+        List<String> safety = extractSafetyGuideLines(analysisJson.path("safety"));
+
+
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType())
+                .recommendation(fullAnalysis)
+                .improvements(improvements)
+                .suggestions(suggestions)
+                .safety(safety)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private String analysisText(JsonNode analysisNode) {
+        StringBuilder fullAnalysis = new StringBuilder();
+        addAnalysisSection(fullAnalysis, analysisNode, "overall", "Overall");
+        addAnalysisSection(fullAnalysis, analysisNode, "pace", "Pace");
+        addAnalysisSection(fullAnalysis, analysisNode, "hearRate", "Heart Rate");
+        addAnalysisSection(fullAnalysis, analysisNode, "caloriesBurned", "Calories Burned ");
+        return fullAnalysis.toString().trim();
+    }
+
+    // one prompt for many activities; a failed call throws so every delivery is retried, while activities missing
+    // from an answered call fall back to single-item calls. Activities whose fallback failed are left out of the map.
+    public Map<String, Recommendation> generateRecommendations(List<Activity> activities){
+
+        Map<String, Recommendation> recommendations = new LinkedHashMap<>();
+        Map<String, String> fingerprints = new HashMap<>();
+        List<Activity> uncached = new ArrayList<>();
+        for (Activity activity : activities) {
+            String fingerprint = recommendationCache.fingerprint(activity);
+            Optional<Recommendation> cached = recommendationCache.lookup(fingerprint, activity);
+            if (cached.isPresent()) {
+                recommendations.put(activity.getId(), cached.get());
+            } else {
+                fingerprints.put(activity.getId(), fingerprint);
+                uncached.add(activity);
+            }
+        }
+
+        if (uncached.size() == 1) {
+            Activity activity = uncached.get(0);
+            recommendations.put(activity.getId(), generateRecommendation(activity));
+            return recommendations;
+        }
+
+        if (!uncached.isEmpty()) {
+            PromptTemplates.Prompt prompt = promptTemplates.render(PromptTemplates.BATCH,
+                    Map.of("activities", describeActivities(uncached)));
+            String aiResponse = geminiService.getAnswer(prompt.text(), prompt.cachedContent());
+            JsonNode keyedAnalyses = null;
+            try {
+                keyedAnalyses = MAPPER.readTree(extractResponseText(aiResponse));
+            } catch (Exception e) {
+                metrics.parseFailure("batch");
+                log.warn("Could not parse batched AI response for {} activities, falling back to single calls: {}",
+                        uncached.size(), e.getMessage());
+            }
+
+            for (Activity activity : uncached) {
+                JsonNode analysisJson = keyedAnalyses == null ? null : keyedAnalyses.get(activity.getId());
+                if (analysisJson != null && analysisJson.isObject()) {
+                    Recommendation recommendation = toRecommendation(activity, analysisJson);
+                    recommendationCache.store(fingerprints.get(activity.getId()), recommendation);
+                    recommendations.put(activity.getId(), recommendation);
+                } else {
+                    try {
+                        recommendations.put(activity.getId(), generateRecommendation(activity));
+                    } catch (GeminiCircuitOpenException e) {
+                        // answered items are in the recommendation cache, so the requeued batch does not repeat them
+                        throw e;
+                    } catch (RuntimeException e) {
+                        log.warn("Single-item fallback for activity {} failed: {}", activity.getId(), e.getMessage());
+                    }
+                }
+            }
+        }
+        return recommendations;
+    }
+
     private Recommendation createDefaultRecommendation(Activity activity)
     {
         return Recommendation.builder()
@@ -157,46 +330,32 @@ private void addAnalysisSection(StringBuilder fullAnalysis, JsonNode analysisNod
     }
 }
 
-private String createPromptForAiActivity(Activity activity) {
+private String bounded(String body) {
+    if (body == null || body.length() <= bodyMaxChars) {
+        return body;
+    }
+    return body.substring(0, bodyMaxChars) + "... (" + (body.length() - bodyMaxChars) + " more chars)";
+}
+
+private String describeActivities(List<Activity> activities) {
 
+    StringBuilder described = new StringBuilder();
+    activities.forEach(activity -> described
+            .append("Activity Id: ").append(activity.getId()).append("\n")
+            .append(describeActivity(activity)).append("\n\n"));
+    return described.toString();
+}
 
+private String describeActivity(Activity activity) {
     return String.format("""
-                    Analyze the fitness activity and provide detailed recommendations in the following format
-                    {"analysis":{
-                     "overall": "Overall analysis here",
-                     "pace": "pace analysis here",
-                     "hearRate": "Heart rate analysis here",
-                     "caloriesBurned": "Calories analysis here"
-                     },
-                     "improvements": [{
-                     "area": "Area Name",
-                     "recommendation": "Detailed recommendation" 
-                     }
-                     ],
-                      "suggestions": [{
-                     "workout ": "Workout Name",
-                     "description": "Detailed workout description" 
-                     }
-                     ],
-                      "safety": [
-                     "Safety Point 1",
-                     "Safety Point 2" 
-                     ]
-                     }
-                     Analyze this activity:
-                     Activity Type: %s
+                    Activity Type: %s
                      Duration: %d minutes
                      Calories Burned: %d
-                     Additional Metrics: %s
-                     
-                     Provide detailed analysis focusing on performance, improvements, next workout suggestions and safety Guidelines
-                     Ensure the response follows the Exact JSON Format shown above.
-                    """,
+                     Additional Metrics: %s""",
             activity.getType(),
             activity.getDuration(),
             activity.getCaloriesBurned(),
             activity.getAdditionalMetrics());
-
 }
 
 }
@@ -0,0 +1,61 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Normalizes an activity into a cache key: type, bucketed duration and calories, and a canonical
+ * additionalMetrics summary (sorted keys, rounded numbers, series reduced to their mean, lists to their size).
+ */
+public final class ActivityFingerprint {
+
+    private ActivityFingerprint() {
+    }
+
+    public static String of(Activity activity, int durationBucket, int caloriesBucket) {
+        StringBuilder key = new StringBuilder()
+                .append(activity.getType()).append('|')
+                .append(bucket(activity.getDuration(), durationBucket)).append('|')
+                .append(bucket(activity.getCaloriesBurned(), caloriesBucket)).append('|');
+
+        if (activity.getAdditionalMetrics() != null) {
+            new TreeMap<>(activity.getAdditionalMetrics())
+                    .forEach((name, value) -> key.append(name).append('=').append(canonical(value)).append(';'));
+        }
+        return sha256(key.toString());
+    }
+
+    private static long bucket(Integer value, int width) {
+        return value == null ? -1 : value / Math.max(1, width);
+    }
+
+    private static String canonical(Object value) {
+        if (value instanceof Number number) {
+            return Long.toString(Math.round(number.doubleValue()));
+        }
+        if (value instanceof Map<?, ?> map) {
+            Object mean = map.get("mean");
+            return mean != null ? canonical(mean) : "map" + map.size();
+        }
+        if (value instanceof List<?> list) {
+            return "list" + list.size();
+        }
+        return value == null ? "" : value.toString().trim().toLowerCase();
+    }
+
+    private static String sha256(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
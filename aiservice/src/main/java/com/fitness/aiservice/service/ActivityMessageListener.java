@@ -2,28 +2,46 @@ package com.fitness.aiservice.service;
 
 
 import com.fitness.aiservice.model.Activity;
-import com.fitness.aiservice.model.Recommendation;
-import com.fitness.aiservice.repository.RecommendationRepository;
+import com.fitness.aiservice.model.EventLane;
+import com.rabbitmq.client.Channel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ActivityMessageListener {
 
-    private final ActivityAiService aiService;
-    private final RecommendationRepository  recommendationRepository;
+    private final RecommendationPipeline recommendationPipeline;
+    private final AiPipelineMetrics metrics;
+
+    @Value("${rabbitmq.queue.bulk-name:activity.bulk.queue}")
+    private String bulkQueue;
 
-    @RabbitListener(queues = "activity.queue")
-      public void  processActivity(Activity activity)
+    @RabbitListener(id = "activity-listener",
+            queues = {"${rabbitmq.queue.name}", "${rabbitmq.queue.bulk-name:activity.bulk.queue}"})
+      public void  processActivity(Activity activity, Channel channel,
+                                   @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                                   @Header(AmqpHeaders.CONSUMER_QUEUE) String queue,
+                                   @Header(name = AmqpHeaders.TIMESTAMP, required = false) Date publishedAt,
+                                   @Header(name = RecommendationRetryService.ATTEMPT_HEADER, required = false) Integer attempt)
       {
 
-          log.info("Recieved activity for processing: {}", activity.getId());
-//          log.info("Generating Recommendations: {}", aiService.generateRecommendation(activity ));
-          Recommendation recommendation = aiService.generateRecommendation(activity);
-          recommendationRepository.save(recommendation);
+          EventLane lane = bulkQueue.equals(queue) ? EventLane.BULK : EventLane.INTERACTIVE;
+          if (publishedAt != null) {
+              metrics.recordMessageAge(lane, Duration.between(publishedAt.toInstant(), Instant.now()));
+          }
+          log.info("Recieved {} activity for processing: {} (attempt {})", lane, activity.getId(), attempt == null ? 1 : attempt + 1);
+          recommendationPipeline.submit(activity, lane, publishedAt == null ? null : publishedAt.toInstant(),
+                  attempt == null ? 0 : attempt, channel, deliveryTag);
       }
 }
@@ -0,0 +1,108 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fitness.aiservice.model.EventLane;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Meters for where a recommendation spends its time: message age when the listener receives it,
+ * Gemini call latency by operation and outcome, token usage reported by Gemini, answers that could
+ * not be parsed, default recommendations and Mongo save latency. Timers publish histogram buckets,
+ * so percentiles can be aggregated across instances from /actuator/prometheus.
+ */
+@Service
+public class AiPipelineMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary promptTokens;
+    private final DistributionSummary responseTokens;
+    private final DistributionSummary cachedTokens;
+
+    public AiPipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.promptTokens = tokens("prompt");
+        this.responseTokens = tokens("response");
+        this.cachedTokens = tokens("cached");
+    }
+
+    // publisher clock to consumer clock, so includes any skew between the two hosts
+    public void recordMessageAge(EventLane lane, Duration age) {
+        Timer.builder("ai.pipeline.message.age")
+                .description("Time from publish to receipt by the listener")
+                .tag("lane", lane.name().toLowerCase())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofHours(1))
+                .register(meterRegistry)
+                .record(age.isNegative() ? Duration.ZERO : age);
+    }
+
+    public void recordLlmCall(String operation, String outcome, long nanos) {
+        Timer.builder("ai.gemini.latency")
+                .description("Gemini call latency, excluding time spent waiting for the governor")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(50))
+                .maximumExpectedValue(Duration.ofMinutes(2))
+                .register(meterRegistry)
+                .record(Duration.ofNanos(nanos));
+    }
+
+    // usageMetadata of a generateContent response or the last streamed chunk; absent fields are skipped
+    public void recordUsage(JsonNode usageMetadata) {
+        if (usageMetadata == null || !usageMetadata.isObject()) {
+            return;
+        }
+        record(promptTokens, usageMetadata.path("promptTokenCount"));
+        record(responseTokens, usageMetadata.path("candidatesTokenCount"));
+        record(cachedTokens, usageMetadata.path("cachedContentTokenCount"));
+    }
+
+    public void parseFailure(String path) {
+        Counter.builder("ai.recommendation.parse.failures")
+                .description("AI answers that could not be parsed into a recommendation")
+                .tag("path", path)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void fallback(String reason) {
+        Counter.builder("ai.recommendation.fallbacks")
+                .description("Default recommendations saved in place of an AI analysis")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public <T> T timeSave(String kind, Supplier<T> save) {
+        return Timer.builder("ai.recommendation.save")
+                .description("Mongo write latency for recommendations")
+                .tag("kind", kind)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(save);
+    }
+
+    private DistributionSummary tokens(String kind) {
+        return DistributionSummary.builder("ai.gemini.tokens")
+                .description("Tokens per Gemini call as reported in usageMetadata")
+                .baseUnit("tokens")
+                .tag("kind", kind)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void record(DistributionSummary summary, JsonNode count) {
+        if (count.canConvertToLong()) {
+            summary.record(count.asLong());
+        }
+    }
+}
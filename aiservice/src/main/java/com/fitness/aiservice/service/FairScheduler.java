@@ -0,0 +1,114 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.EventLane;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Buffers work per lane and per user. The interactive lane is served first, but when both lanes
+ * have work the bulk lane still gets one turn after every interactive-weight interactive items.
+ * Within a lane users take turns one item at a time, so a user with a large backlog is served at
+ * the same rate as everyone else instead of ahead of them. Only buffered items take part, so fairness is
+ * bounded by what the listener has fetched (ai.pipeline.prefetch per lane queue); messages still in the
+ * broker arrive in publish order.
+ */
+public class FairScheduler<T> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<EventLane, Lane<T>> lanes = new EnumMap<>(EventLane.class);
+    private final int interactiveWeight;
+    private int interactiveStreak;
+
+    public FairScheduler(int interactiveWeight) {
+        this.interactiveWeight = interactiveWeight;
+        for (EventLane lane : EventLane.values()) {
+            lanes.put(lane, new Lane<>());
+        }
+    }
+
+    public void offer(EventLane lane, String userId, T item) {
+        lock.lock();
+        try {
+            lanes.get(lane).add(userId == null ? "" : userId, item);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // null when nothing arrived within the timeout
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (isEmpty()) {
+                if (remaining <= 0) {
+                    return null;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size(EventLane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isEmpty() {
+        return lanes.values().stream().allMatch(lane -> lane.size == 0);
+    }
+
+    private T next() {
+        Lane<T> interactive = lanes.get(EventLane.INTERACTIVE);
+        Lane<T> bulk = lanes.get(EventLane.BULK);
+        if (interactive.size > 0 && (bulk.size == 0 || interactiveStreak < interactiveWeight)) {
+            interactiveStreak++;
+            return interactive.next();
+        }
+        interactiveStreak = 0;
+        return bulk.next();
+    }
+
+    private static final class Lane<T> {
+
+        private final Map<String, ArrayDeque<T>> byUser = new HashMap<>();
+        private final ArrayDeque<String> turns = new ArrayDeque<>();
+        private int size;
+
+        void add(String userId, T item) {
+            byUser.computeIfAbsent(userId, user -> {
+                turns.addLast(user);
+                return new ArrayDeque<>();
+            }).addLast(item);
+            size++;
+        }
+
+        T next() {
+            String userId = turns.pollFirst();
+            ArrayDeque<T> backlog = byUser.get(userId);
+            T item = backlog.pollFirst();
+            size--;
+            if (backlog.isEmpty()) {
+                byUser.remove(userId);
+            } else {
+                turns.addLast(userId);
+            }
+            return item;
+        }
+    }
+}
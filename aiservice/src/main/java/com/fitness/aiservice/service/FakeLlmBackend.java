@@ -0,0 +1,190 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for Gemini, so the AI pipeline can be load tested without network access.
+ * Latency is log-normal around latency-median; error-rate and throttle-rate answer with 500 and 429,
+ * and malformed-rate truncates the model text mid-JSON. Batch prompts get one answer per Activity Id.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ai.llm.backend", havingValue = "fake")
+public class FakeLlmBackend implements LlmBackend {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern ACTIVITY_ID = Pattern.compile("Activity Id: (\\S+)");
+
+    private final Duration latencyMedian;
+    private final double latencySigma;
+    private final double errorRate;
+    private final double throttleRate;
+    private final double malformedRate;
+    private final int streamChunkSize;
+
+    public FakeLlmBackend(@Value("${ai.llm.fake.latency-median:800ms}") Duration latencyMedian,
+                          @Value("${ai.llm.fake.latency-sigma:0.5}") double latencySigma,
+                          @Value("${ai.llm.fake.error-rate:0.0}") double errorRate,
+                          @Value("${ai.llm.fake.throttle-rate:0.0}") double throttleRate,
+                          @Value("${ai.llm.fake.malformed-rate:0.0}") double malformedRate,
+                          @Value("${ai.llm.fake.stream-chunk-size:48}") int streamChunkSize) {
+        this.latencyMedian = latencyMedian;
+        this.latencySigma = latencySigma;
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.malformedRate = malformedRate;
+        this.streamChunkSize = streamChunkSize;
+        log.warn("Using the fake LLM backend: median latency {}, error rate {}, throttle rate {}, malformed rate {}",
+                latencyMedian, errorRate, throttleRate, malformedRate);
+    }
+
+    @Override
+    public String generate(Map<String, Object> requestBody) {
+        long latency = sampleLatencyNanos();
+        sleep(latency);
+        failRandomly();
+        String text = answerText(requestBody);
+        ObjectNode response = envelope(text);
+        response.set("usageMetadata", usage(requestBody, text));
+        return response.toString();
+    }
+
+    // first fragment after roughly a third of the latency, the rest spread evenly
+    @Override
+    public JsonNode stream(Map<String, Object> requestBody, Consumer<String> onText) {
+        long latency = sampleLatencyNanos();
+        sleep(latency / 3);
+        failRandomly();
+
+        String text = answerText(requestBody);
+        int chunks = Math.max(1, (text.length() + streamChunkSize - 1) / streamChunkSize);
+        long pause = (latency - latency / 3) / chunks;
+        for (int start = 0; start < text.length(); start += streamChunkSize) {
+            onText.accept(text.substring(start, Math.min(text.length(), start + streamChunkSize)));
+            sleep(pause);
+        }
+        return usage(requestBody, text);
+    }
+
+    @Override
+    public String createCachedContent(String text, Duration ttl) {
+        return "cachedContents/fake-" + UUID.randomUUID();
+    }
+
+    private String answerText(Map<String, Object> requestBody) {
+        String prompt = promptText(requestBody);
+        Set<String> activityIds = new LinkedHashSet<>();
+        Matcher matcher = ACTIVITY_ID.matcher(prompt);
+        while (matcher.find()) {
+            activityIds.add(matcher.group(1));
+        }
+
+        ObjectNode answer;
+        if (activityIds.isEmpty()) {
+            answer = analysis();
+        } else {
+            answer = MAPPER.createObjectNode();
+            activityIds.forEach(id -> answer.set(id, analysis()));
+        }
+
+        String text = "```json\n" + answer.toPrettyString() + "\n```";
+        if (ThreadLocalRandom.current().nextDouble() < malformedRate) {
+            return text.substring(0, ThreadLocalRandom.current().nextInt(1, text.length() / 2));
+        }
+        return text;
+    }
+
+    private ObjectNode analysis() {
+        ObjectNode root = MAPPER.createObjectNode();
+        root.putObject("analysis")
+                .put("overall", "Solid session with consistent effort throughout.")
+                .put("pace", "Pace was steady with a slight fade in the final third.")
+                .put("hearRate", "Heart rate stayed mostly in the aerobic zone.")
+                .put("caloriesBurned", "Calorie burn is in line with the duration and intensity.");
+        root.putArray("improvements").addObject()
+                .put("area", "Pacing")
+                .put("recommendation", "Start slightly slower to hold pace at the end.");
+        root.putArray("suggestions").addObject()
+                .put("workout", "Interval Run")
+                .put("description", "6 x 400m at 5k pace with 90s recovery.");
+        ArrayNode safety = root.putArray("safety");
+        safety.add("Warm up for at least 10 minutes");
+        safety.add("Stay hydrated");
+        return root;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String promptText(Map<String, Object> requestBody) {
+        Object[] contents = (Object[]) requestBody.get("contents");
+        Object[] parts = (Object[]) ((Map<String, Object>) contents[0]).get("parts");
+        return String.valueOf(((Map<String, Object>) parts[0]).get("text"));
+    }
+
+    private ObjectNode envelope(String text) {
+        ObjectNode response = MAPPER.createObjectNode();
+        response.putArray("candidates").addObject()
+                .putObject("content")
+                .put("role", "model")
+                .putArray("parts").addObject().put("text", text);
+        return response;
+    }
+
+    // about four characters per token, like the governor's estimate
+    private ObjectNode usage(Map<String, Object> requestBody, String text) {
+        int promptTokens = promptText(requestBody).length() / 4;
+        int responseTokens = text.length() / 4;
+        return MAPPER.createObjectNode()
+                .put("promptTokenCount", promptTokens)
+                .put("candidatesTokenCount", responseTokens)
+                .put("totalTokenCount", promptTokens + responseTokens);
+    }
+
+    private void failRandomly() {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < throttleRate) {
+            throw error(429, "Too Many Requests");
+        }
+        if (roll < throttleRate + errorRate) {
+            throw error(500, "Internal Server Error");
+        }
+    }
+
+    private WebClientResponseException error(int status, String reason) {
+        return WebClientResponseException.create(status, reason, HttpHeaders.EMPTY,
+                ("{\"error\":{\"code\":" + status + "}}").getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private long sampleLatencyNanos() {
+        double factor = Math.exp(latencySigma * ThreadLocalRandom.current().nextGaussian());
+        return (long) (latencyMedian.toNanos() * factor);
+    }
+
+    private void sleep(long nanos) {
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while simulating LLM latency", e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.fitness.aiservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Opens after consecutive Gemini failures. While open, RecommendationPipeline stops taking work, so
+ * deliveries stay unacked within the listener prefetch and the rest wait in the broker instead of being
+ * burned on default recommendations. The listener itself keeps running: stopping it would close its
+ * channel and strand the deliveries already buffered. After open-duration the breaker is half-open and
+ * a single probe request is let through; its success closes the breaker and its failure reopens it.
+ * Requests Gemini refused for their own content (400, 401, 403, 404) are not failures of the service
+ * and leave the count unchanged.
+ */
+@Slf4j
+@Component
+public class GeminiCircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private boolean probeInFlight;
+    private long openUntil;
+
+    public GeminiCircuitBreaker(MeterRegistry meterRegistry,
+                                @Value("${gemini.governor.circuit.failure-threshold:5}") int failureThreshold,
+                                @Value("${gemini.governor.circuit.open-duration:30s}") Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+
+        Gauge.builder("gemini.governor.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .register(meterRegistry);
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+            log.info("Gemini circuit half-open, letting a probe request through");
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        return state;
+    }
+
+    // every admitted request must end in onSuccess, onFailure or onIgnored
+    public synchronized boolean allowRequest() {
+        State current = getState();
+        if (current == State.OPEN) {
+            return false;
+        }
+        if (current == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    // true while allowRequest would refuse, so workers can hold buffered deliveries instead of failing them
+    public synchronized boolean isRejecting() {
+        State current = getState();
+        return current == State.OPEN || (current == State.HALF_OPEN && probeInFlight);
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN) {
+            log.info("Gemini circuit closed");
+            state = State.CLOSED;
+        }
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            open();
+        }
+    }
+
+    // the request said nothing about Gemini's health: it was refused for its content or never sent
+    public synchronized void onIgnored() {
+        probeInFlight = false;
+    }
+
+    private void open() {
+        log.warn("Gemini circuit opened after {} consecutive failures, holding work for {}",
+                consecutiveFailures, openDuration);
+        state = State.OPEN;
+        openUntil = System.nanoTime() + openDuration.toNanos();
+    }
+}
@@ -0,0 +1,12 @@
+package com.fitness.aiservice.service;
+
+/**
+ * Thrown instead of calling Gemini while the circuit breaker refuses requests. Nothing was sent,
+ * so callers hand the work back to the broker without counting it as a failed attempt.
+ */
+public class GeminiCircuitOpenException extends IllegalStateException {
+
+    public GeminiCircuitOpenException() {
+        super("Gemini circuit is open");
+    }
+}
@@ -0,0 +1,126 @@
+package com.fitness.aiservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-side limits for Gemini calls: token buckets for requests/sec and prompt tokens/min, plus an
+ * AIMD concurrency limit that grows by 1/limit on fast successes and halves on 429s or slow calls.
+ * Other failures leave the limit as it is, so an outage never raises it.
+ */
+@Slf4j
+@Component
+public class GeminiGovernor {
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket promptTokenBucket;
+    private final double minLimit;
+    private final double maxLimit;
+    private final Duration latencyThreshold;
+    private final Counter throttledCounter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private double concurrencyLimit;
+    private int inFlight;
+
+    public GeminiGovernor(MeterRegistry meterRegistry,
+                          @Value("${gemini.governor.requests-per-second:5}") double requestsPerSecond,
+                          @Value("${gemini.governor.tokens-per-minute:250000}") double tokensPerMinute,
+                          @Value("${gemini.governor.min-concurrency:1}") int minConcurrency,
+                          @Value("${gemini.governor.max-concurrency:32}") int maxConcurrency,
+                          @Value("${gemini.governor.initial-concurrency:4}") int initialConcurrency,
+                          @Value("${gemini.governor.latency-threshold:10s}") Duration latencyThreshold) {
+        this.requestBucket = new TokenBucket(requestsPerSecond, requestsPerSecond);
+        this.promptTokenBucket = new TokenBucket(tokensPerMinute, tokensPerMinute / 60.0);
+        this.minLimit = minConcurrency;
+        this.maxLimit = maxConcurrency;
+        this.concurrencyLimit = Math.max(minConcurrency, Math.min(maxConcurrency, initialConcurrency));
+        this.latencyThreshold = latencyThreshold;
+        this.throttledCounter = meterRegistry.counter("gemini.governor.throttled");
+
+        Gauge.builder("gemini.governor.concurrency.limit", this, governor -> governor.concurrencyLimit)
+                .register(meterRegistry);
+        Gauge.builder("gemini.governor.in.flight", this, governor -> governor.inFlight)
+                .register(meterRegistry);
+        Gauge.builder("gemini.governor.requests.per.second", requestBucket, bucket -> bucket.refillPerSecond)
+                .register(meterRegistry);
+        Gauge.builder("gemini.governor.tokens.per.minute", promptTokenBucket, bucket -> bucket.refillPerSecond * 60)
+                .register(meterRegistry);
+    }
+
+    public void acquire(int promptTokens) throws InterruptedException {
+        requestBucket.take(1);
+        promptTokenBucket.take(promptTokens);
+
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= Math.floor(concurrencyLimit)) {
+                permitReleased.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(Duration latency, boolean succeeded, boolean throttled) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (throttled || latency.compareTo(latencyThreshold) > 0) {
+                concurrencyLimit = Math.max(minLimit, concurrencyLimit / 2);
+                if (throttled) {
+                    throttledCounter.increment();
+                }
+                log.warn("Gemini concurrency limit decreased to {}", (int) concurrencyLimit);
+            } else if (succeeded) {
+                concurrencyLimit = Math.min(maxLimit, concurrencyLimit + 1 / concurrencyLimit);
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class TokenBucket {
+
+        private final double capacity;
+        private final double refillPerSecond;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        private TokenBucket(double capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+            this.tokens = capacity;
+        }
+
+        void take(double requested) throws InterruptedException {
+            double needed = Math.min(requested, capacity);
+            while (true) {
+                long waitNanos;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    tokens = Math.min(capacity, tokens + (now - lastRefill) / 1e9 * refillPerSecond);
+                    lastRefill = now;
+                    if (tokens >= needed) {
+                        tokens -= needed;
+                        return;
+                    }
+                    waitNanos = (long) ((needed - tokens) / refillPerSecond * 1e9);
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1_000_000));
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@Component
+@ConditionalOnProperty(name = "ai.llm.backend", havingValue = "gemini", matchIfMissing = true)
+public class GeminiHttpBackend implements LlmBackend {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<JsonNode>> SSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    private final WebClient webClient;
+    private final Duration callTimeout;
+
+    @Value("${gemini.api.url}")
+    private  String geminiAPiUrl;
+
+    @Value("${gemini.api.key}")
+    private  String geminiAPiKey;
+
+    @Value("${gemini.streaming.url:}")
+    private  String geminiStreamUrl;
+
+    public GeminiHttpBackend(WebClient.Builder webClientBuilder,
+                             @Value("${gemini.governor.call-timeout:30s}") Duration callTimeout,
+                             @Value("${gemini.governor.max-connections:32}") int maxConnections) {
+        this.callTimeout = callTimeout;
+
+        HttpClient httpClient = HttpClient.create(ConnectionProvider.builder("gemini")
+                        .maxConnections(maxConnections)
+                        .pendingAcquireTimeout(callTimeout)
+                        .build())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000)
+                .responseTimeout(callTimeout);
+        this.webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    @Override
+    public String generate(Map<String, Object> requestBody) {
+        return webClient.post()
+                .uri(geminiAPiUrl + geminiAPiKey)
+                .header("Content-Type", "application/json")
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(callTimeout)
+                .block();
+    }
+
+    // streamGenerateContent with alt=sse; each event carries the next fragment of the answer text.
+    // Events are taken off the Netty event loop and handed to onText on the calling thread, which may block.
+    @Override
+    public JsonNode stream(Map<String, Object> requestBody, Consumer<String> onText) {
+        JsonNode usage = null;
+        Iterable<ServerSentEvent<JsonNode>> events = webClient.post()
+                .uri(streamUrl() + geminiAPiKey)
+                .header("Content-Type", "application/json")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToFlux(SSE_TYPE)
+                .timeout(callTimeout)
+                .toIterable();
+        for (ServerSentEvent<JsonNode> event : events) {
+            if (event.data() == null) {
+                continue;
+            }
+            event.data().path("candidates").path(0).path("content").path("parts")
+                    .forEach(part -> onText.accept(part.path("text").asText()));
+            // counts are cumulative, so the last chunk carrying them has the totals
+            if (event.data().has("usageMetadata")) {
+                usage = event.data().get("usageMetadata");
+            }
+        }
+        return usage;
+    }
+
+    @Override
+    public String createCachedContent(String text, Duration ttl) {
+        Map<String, Object> requestBody = Map.of(
+                "model", "models/" + modelName(),
+                "contents", new Object[]{
+                        Map.of("role", "user", "parts", new Object[]{
+                                Map.of("text", text)
+                        })
+                },
+                "ttl", ttl.toSeconds() + "s");
+
+        JsonNode response = webClient.post()
+                .uri(apiBaseUrl() + "/cachedContents?key=" + geminiAPiKey)
+                .header("Content-Type", "application/json")
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .timeout(callTimeout)
+                .block();
+
+        if (response == null || response.path("name").asText().isEmpty()) {
+            throw new IllegalStateException("Gemini did not return a cached content name");
+        }
+        return response.path("name").asText();
+    }
+
+    // gemini.api.url looks like <base>/models/<model>:generateContent?key=
+    private String apiBaseUrl() {
+        return geminiAPiUrl.substring(0, geminiAPiUrl.indexOf("/models/"));
+    }
+
+    private String modelName() {
+        int start = geminiAPiUrl.indexOf("/models/") + "/models/".length();
+        return geminiAPiUrl.substring(start, geminiAPiUrl.indexOf(':', start));
+    }
+
+    private String streamUrl() {
+        if (geminiStreamUrl != null && !geminiStreamUrl.isBlank()) {
+            return geminiStreamUrl;
+        }
+        return geminiAPiUrl.replace(":generateContent?", ":streamGenerateContent?alt=sse&");
+    }
+}
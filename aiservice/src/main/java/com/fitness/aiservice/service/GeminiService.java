@@ -1,49 +1,127 @@
 package com.fitness.aiservice.service;
 
-import io.netty.util.internal.shaded.org.jctools.queues.MpmcArrayQueue;
-import org.springframework.beans.factory.annotation.Value;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 
 @Service
 public class GeminiService  {
 
-    private final WebClient webClient;
+    // refused because of the request itself, so they say nothing about whether Gemini is healthy
+    private static final Set<HttpStatus> REJECTED = Set.of(
+            HttpStatus.BAD_REQUEST, HttpStatus.UNAUTHORIZED, HttpStatus.FORBIDDEN, HttpStatus.NOT_FOUND);
 
-    @Value("${gemini.api.url}")
-    private  String geminiAPiUrl;
+    private final LlmBackend backend;
+    private final GeminiGovernor governor;
+    private final GeminiCircuitBreaker circuitBreaker;
+    private final AiPipelineMetrics metrics;
 
-    @Value("${gemini.api.key}")
-    private  String geminiAPiKey;
-
-    public GeminiService(WebClient.Builder webClientBuilder){
-        this.webClient = webClientBuilder.build();
+    public GeminiService(LlmBackend backend,
+                         GeminiGovernor governor,
+                         GeminiCircuitBreaker circuitBreaker,
+                         AiPipelineMetrics metrics){
+        this.backend = backend;
+        this.governor = governor;
+        this.circuitBreaker = circuitBreaker;
+        this.metrics = metrics;
     }
 
 
     public String getAnswer(String question)
     {
-        Map<String, Object> requestBody =
-                Map.of("contents", new Object[]{
-                        Map.of("parts", new Object[]{
-                                Map.of("text", question)
-                        })
-                });
-
-        String response  = webClient.post()
-                .uri(geminiAPiUrl + geminiAPiKey)
-                .header("Content-Type", "application/json")
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(String.class)
-                .block();
-
-        return response;
+        return getAnswer(question, null);
+    }
+
+    // cachedContent names a context created by createCachedContent; it is prepended to the question by Gemini
+    public String getAnswer(String question, String cachedContent)
+    {
+        return governed("generate", question, cachedContent, backend::generate);
+    }
 
+    // returns the usageMetadata of the stream, or null if Gemini sent none
+    public JsonNode streamAnswer(String question, String cachedContent, Consumer<String> onText)
+    {
+        return governed("stream", question, cachedContent, requestBody -> backend.stream(requestBody, onText));
+    }
+
+    // uploads a static prompt prefix once and returns the cachedContents name to reference it by
+    public String createCachedContent(String text, Duration ttl)
+    {
+        return backend.createCachedContent(text, ttl);
     }
 
+    private <T> T governed(String operation, String question, String cachedContent, Function<Map<String, Object>, T> call)
+    {
+        if (!circuitBreaker.allowRequest()) {
+            throw new GeminiCircuitOpenException();
+        }
+
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        if (cachedContent != null) {
+            requestBody.put("cachedContent", cachedContent);
+        }
+        requestBody.put("contents", new Object[]{
+                Map.of("parts", new Object[]{
+                        Map.of("text", question)
+                })
+        });
+
+        try {
+            // roughly four characters per token is enough for rate limiting
+            governor.acquire(question.length() / 4);
+        } catch (InterruptedException e) {
+            circuitBreaker.onIgnored();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for Gemini capacity", e);
+        }
+
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        boolean throttled = false;
+        String outcome = "success";
+        try {
+            T response = call.apply(requestBody);
+
+            succeeded = true;
+            circuitBreaker.onSuccess();
+            return response;
+        } catch (RuntimeException e) {
+            throttled = e instanceof WebClientResponseException responseException
+                    && responseException.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS;
+            outcome = outcome(e);
+            if (e instanceof WebClientResponseException responseException
+                    && REJECTED.contains(HttpStatus.resolve(responseException.getStatusCode().value()))) {
+                circuitBreaker.onIgnored();
+            } else {
+                circuitBreaker.onFailure();
+            }
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            governor.release(Duration.ofNanos(elapsed), succeeded, throttled);
+            metrics.recordLlmCall(operation, outcome, elapsed);
+        }
 
+    }
+
+    private static String outcome(RuntimeException e)
+    {
+        if (e instanceof WebClientResponseException responseException) {
+            if (responseException.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                return "throttled";
+            }
+            return responseException.getStatusCode().is4xxClientError() ? "client_error" : "server_error";
+        }
+        return e.getCause() instanceof TimeoutException ? "timeout" : "error";
+    }
 }
@@ -0,0 +1,25 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Transport behind GeminiService. Rate limiting, AIMD concurrency and the circuit breaker stay in
+ * GeminiService, so every backend is governed the same way. Request bodies and responses use the
+ * Gemini generateContent shape, and failures surface as WebClientResponseException like the HTTP client.
+ * Select with ai.llm.backend (gemini or fake).
+ */
+public interface LlmBackend {
+
+    // returns the raw generateContent response body
+    String generate(Map<String, Object> requestBody);
+
+    // hands each streamed text fragment to onText on the calling thread; returns the final usageMetadata, or null if none was sent
+    JsonNode stream(Map<String, Object> requestBody, Consumer<String> onText);
+
+    // uploads text as cached content and returns its name
+    String createCachedContent(String text, Duration ttl);
+}
@@ -0,0 +1,193 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.EventLane;
+import com.fitness.aiservice.model.Recommendation;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * End-to-end load test for the loadtest profile: publishes N synthetic activities to the activity
+ * exchange, waits until each has a complete recommendation in Mongo, then logs throughput, latency
+ * percentiles (publish to final save) and the fallback rate per lane. An optional bulk backlog from a
+ * single user is published first, to check that interactive latency holds during imports. The profile
+ * pairs this with the fake LLM backend, so only a local RabbitMQ and MongoDB are needed.
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+public class LoadTestRunner implements ApplicationRunner {
+
+    private static final String FALLBACK_TEXT = "Unable to generate detailed analysis";
+    private static final String[] TYPES = {"RUNNING", "WALKING", "CYCLING", "SWIMMING", "WEIGHT_TRAINING", "YOGA", "HIIT"};
+
+    private final RabbitTemplate rabbitTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final RecommendationCodec codec;
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+    @Value("${rabbitmq.routing.key}")
+    private String routingKey;
+
+    @Value("${rabbitmq.routing.bulk-key:activity.tracking.bulk}")
+    private String bulkRoutingKey;
+
+    @Value("${ai.loadtest.activities:500}")
+    private int activityCount;
+
+    @Value("${ai.loadtest.bulk-activities:0}")
+    private int bulkActivityCount;
+
+    @Value("${ai.loadtest.users:50}")
+    private int userCount;
+
+    // activities per second; 0 publishes the whole load as one burst
+    @Value("${ai.loadtest.publish-rate:0}")
+    private int publishRate;
+
+    @Value("${ai.loadtest.timeout:10m}")
+    private Duration timeout;
+
+    public LoadTestRunner(RabbitTemplate rabbitTemplate, MongoTemplate mongoTemplate, RecommendationCodec codec) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.codec = codec;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        Map<String, LocalDateTime> publishedAt = new HashMap<>();
+        Map<String, EventLane> lanes = new HashMap<>();
+        LocalDateTime started = LocalDateTime.now();
+        long pauseNanos = publishRate > 0 ? 1_000_000_000L / publishRate : 0;
+
+        log.info("Load test: publishing {} bulk activities for one user, then {} activities for {} users",
+                bulkActivityCount, activityCount, userCount);
+        for (int i = 0; i < bulkActivityCount; i++) {
+            Activity activity = syntheticActivity("loadtest-bulk-user");
+            publish(activity, EventLane.BULK, publishedAt, lanes);
+        }
+        for (int i = 0; i < activityCount; i++) {
+            Activity activity = syntheticActivity("loadtest-user-" + (i % userCount));
+            publish(activity, EventLane.INTERACTIVE, publishedAt, lanes);
+            if (pauseNanos > 0) {
+                Thread.sleep(Duration.ofNanos(pauseNanos));
+            }
+        }
+
+        List<Recommendation> completed = awaitRecommendations(publishedAt, started);
+        for (EventLane lane : EventLane.values()) {
+            List<Recommendation> laneCompleted = completed.stream()
+                    .filter(recommendation -> lanes.get(recommendation.getActivityId()) == lane)
+                    .toList();
+            long published = lanes.values().stream().filter(lane::equals).count();
+            if (published > 0) {
+                report(lane, published, publishedAt, laneCompleted, started);
+            }
+        }
+    }
+
+    private void publish(Activity activity, EventLane lane, Map<String, LocalDateTime> publishedAt, Map<String, EventLane> lanes) {
+        publishedAt.put(activity.getId(), LocalDateTime.now());
+        lanes.put(activity.getId(), lane);
+        rabbitTemplate.convertAndSend(exchange, lane == EventLane.BULK ? bulkRoutingKey : routingKey, activity, message -> {
+            message.getMessageProperties().setTimestamp(new Date());
+            return message;
+        });
+    }
+
+    private List<Recommendation> awaitRecommendations(Map<String, LocalDateTime> publishedAt, LocalDateTime started)
+            throws InterruptedException {
+        // a streamed recommendation is only complete once every section is present
+        Query query = new Query(Criteria.where("activityId").in(publishedAt.keySet()))
+                .addCriteria(RecommendationCodec.complete());
+        query.fields().include("activityId", "recommendation", "recommendationDeflated", "storageFormat", "createdAt");
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<Recommendation> completed = List.of();
+        while (System.nanoTime() < deadline) {
+            completed = codec.decode(mongoTemplate.find(query, Recommendation.class));
+            if (completed.size() >= publishedAt.size()) {
+                break;
+            }
+            log.info("Load test: {}/{} recommendations after {}s", completed.size(), publishedAt.size(),
+                    Duration.between(started, LocalDateTime.now()).toSeconds());
+            Thread.sleep(1000);
+        }
+        return completed;
+    }
+
+    private void report(EventLane lane, long published, Map<String, LocalDateTime> publishedAt,
+                        List<Recommendation> completed, LocalDateTime started) {
+        List<Long> latencies = new ArrayList<>(completed.size());
+        LocalDateTime finished = started;
+        int fallbacks = 0;
+        for (Recommendation recommendation : completed) {
+            LocalDateTime savedAt = recommendation.getCreatedAt();
+            latencies.add(Duration.between(publishedAt.get(recommendation.getActivityId()), savedAt).toMillis());
+            if (savedAt.isAfter(finished)) {
+                finished = savedAt;
+            }
+            if (FALLBACK_TEXT.equals(recommendation.getRecommendation())) {
+                fallbacks++;
+            }
+        }
+        latencies.sort(null);
+
+        double seconds = Math.max(1, Duration.between(started, finished).toMillis()) / 1000.0;
+        log.info("""
+                        Load test finished ({} lane)
+                          completed:   {}/{}
+                          throughput:  {} recommendations/s
+                          latency ms:  p50={} p90={} p99={} max={}
+                          fallbacks:   {} ({}%)""",
+                lane, completed.size(), published,
+                String.format("%.2f", completed.size() / seconds),
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99), percentile(latencies, 100),
+                fallbacks, String.format("%.2f", completed.isEmpty() ? 0.0 : 100.0 * fallbacks / completed.size()));
+    }
+
+    private long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+
+    private Activity syntheticActivity(String userId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Activity activity = new Activity();
+        activity.setId(new ObjectId().toHexString());
+        activity.setUserId(userId);
+        activity.setType(TYPES[random.nextInt(TYPES.length)]);
+        activity.setDuration(random.nextInt(10, 121));
+        activity.setCaloriesBurned(random.nextInt(50, 1201));
+        activity.setStartTime(LocalDateTime.now().minusMinutes(random.nextInt(0, 10_000)));
+        activity.setAdditionalMetrics(Map.of(
+                "distance", Math.round(random.nextDouble(1, 30) * 10) / 10.0,
+                "averageHeartRate", random.nextInt(100, 180)));
+        activity.setCreatedAt(LocalDateTime.now());
+        return activity;
+    }
+}
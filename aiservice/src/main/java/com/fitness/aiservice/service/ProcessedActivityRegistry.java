@@ -0,0 +1,125 @@
+package com.fitness.aiservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Recently seen activity ids, so redeliveries and re-publishes of the same activity are dropped
+ * before any LLM call. A delivery claims its activity when it is buffered, with a queued-lease long
+ * enough to wait its turn, and start renews that to the shorter lease when a worker picks it up. The
+ * claim turns into a processed entry once the recommendation is saved, or is released if the attempt
+ * fails so the scheduled retry can claim it again. A lease that is neither completed nor released (a
+ * hung call) expires and lets the next delivery through. Claims only look at memory; ids saved
+ * before a restart are caught by isStored, which workers call before the LLM call.
+ */
+@Service
+public class ProcessedActivityRegistry {
+
+    public enum Claim {
+        ACQUIRED, IN_FLIGHT, PROCESSED
+    }
+
+    private record Entry(boolean processed, long leaseUntil) {
+    }
+
+    private final RecommendationService recommendationService;
+    private final Cache<String, Entry> seen;
+    private final long leaseNanos;
+    private final long queuedLeaseNanos;
+    private final Counter duplicateInFlight;
+    private final Counter duplicateProcessed;
+    private final Counter duplicateStored;
+    private final Counter leaseExpired;
+
+    public ProcessedActivityRegistry(RecommendationService recommendationService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${ai.idempotency.max-size:100000}") long maxSize,
+                                     @Value("${ai.idempotency.ttl:6h}") Duration ttl,
+                                     @Value("${ai.idempotency.lease:5m}") Duration lease,
+                                     @Value("${ai.idempotency.queued-lease:30m}") Duration queuedLease) {
+        this.recommendationService = recommendationService;
+        this.leaseNanos = lease.toNanos();
+        this.queuedLeaseNanos = queuedLease.toNanos();
+        this.seen = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+
+        Gauge.builder("ai.idempotency.tracked", seen, Cache::estimatedSize).register(meterRegistry);
+        this.duplicateInFlight = meterRegistry.counter("ai.idempotency.duplicates", "state", "in_flight");
+        this.duplicateProcessed = meterRegistry.counter("ai.idempotency.duplicates", "state", "processed");
+        this.duplicateStored = meterRegistry.counter("ai.idempotency.duplicates", "state", "stored");
+        this.leaseExpired = meterRegistry.counter("ai.idempotency.lease.expired");
+    }
+
+    // memory only, so it is safe on the listener thread
+    public Claim claim(String activityId) {
+        if (activityId == null) {
+            return Claim.ACQUIRED;
+        }
+
+        long now = System.nanoTime();
+        AtomicReference<Claim> result = new AtomicReference<>(Claim.ACQUIRED);
+        seen.asMap().compute(activityId, (id, current) -> {
+            if (current != null && current.processed()) {
+                result.set(Claim.PROCESSED);
+                return current;
+            }
+            if (current != null && current.leaseUntil() - now > 0) {
+                result.set(Claim.IN_FLIGHT);
+                return current;
+            }
+            if (current != null) {
+                leaseExpired.increment();
+            }
+            return new Entry(false, now + queuedLeaseNanos);
+        });
+
+        switch (result.get()) {
+            case PROCESSED -> duplicateProcessed.increment();
+            case IN_FLIGHT -> duplicateInFlight.increment();
+            case ACQUIRED -> { }
+        }
+        return result.get();
+    }
+
+    // processing of a claimed activity begins; the lease now runs from here
+    public void start(String activityId) {
+        if (activityId != null) {
+            long leaseUntil = System.nanoTime() + leaseNanos;
+            seen.asMap().compute(activityId,
+                    (id, current) -> current != null && current.processed() ? current : new Entry(false, leaseUntil));
+        }
+    }
+
+    // one indexed Mongo lookup, for workers only; a stored recommendation marks the activity processed
+    public boolean isStored(String activityId) {
+        if (activityId == null || !recommendationService.hasCompleteRecommendation(activityId)) {
+            return false;
+        }
+        complete(activityId);
+        duplicateStored.increment();
+        return true;
+    }
+
+    public void complete(String activityId) {
+        if (activityId != null) {
+            seen.put(activityId, new Entry(true, 0));
+        }
+    }
+
+    // a failed attempt gives up its lease; an already processed entry is kept
+    public void release(String activityId) {
+        if (activityId != null) {
+            seen.asMap().computeIfPresent(activityId, (id, current) -> current.processed() ? current : null);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.fitness.aiservice.service;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prompt template compiled once into literal and {{variable}} segments. Everything before the
+ * first variable is the static prefix, which can be uploaded as provider cached context so that
+ * per-call requests carry only the dynamic remainder.
+ */
+@Getter
+public class PromptTemplate {
+
+    private final String name;
+    private final String version;
+    private final String staticPrefix;
+    private final List<Segment> dynamicSegments;
+
+    private PromptTemplate(String name, String version, String staticPrefix, List<Segment> dynamicSegments) {
+        this.name = name;
+        this.version = version;
+        this.staticPrefix = staticPrefix;
+        this.dynamicSegments = dynamicSegments;
+    }
+
+    public static PromptTemplate compile(String name, String version, String text) {
+        List<Segment> segments = new ArrayList<>();
+        int position = 0;
+        while (position < text.length()) {
+            int open = text.indexOf("{{", position);
+            if (open < 0) {
+                segments.add(Segment.literal(text.substring(position)));
+                break;
+            }
+            int close = text.indexOf("}}", open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed variable in prompt template " + name + ":" + version);
+            }
+            if (open > position) {
+                segments.add(Segment.literal(text.substring(position, open)));
+            }
+            segments.add(Segment.variable(text.substring(open + 2, close).trim()));
+            position = close + 2;
+        }
+
+        String staticPrefix = "";
+        if (!segments.isEmpty() && segments.get(0).variable() == null) {
+            staticPrefix = segments.remove(0).literal();
+        }
+        return new PromptTemplate(name, version, staticPrefix, List.copyOf(segments));
+    }
+
+    public String key() {
+        return name + ":" + version;
+    }
+
+    public String render(Map<String, String> variables) {
+        return staticPrefix + renderDynamic(variables);
+    }
+
+    public String renderDynamic(Map<String, String> variables) {
+        StringBuilder prompt = new StringBuilder();
+        for (Segment segment : dynamicSegments) {
+            if (segment.variable() == null) {
+                prompt.append(segment.literal());
+            } else {
+                String value = variables.get(segment.variable());
+                if (value == null) {
+                    throw new IllegalArgumentException("Missing prompt variable " + segment.variable() + " for " + key());
+                }
+                prompt.append(value);
+            }
+        }
+        return prompt.toString();
+    }
+
+    public record Segment(String literal, String variable) {
+
+        static Segment literal(String text) {
+            return new Segment(text, null);
+        }
+
+        static Segment variable(String name) {
+            return new Segment(null, name);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.fitness.aiservice.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles the recommendation prompts once at startup. Template text and version come from the
+ * config server (ai.prompts.*) and fall back to the built-in v1 templates below.
+ * With gemini.context-cache.enabled the static prefix of each template version is uploaded as
+ * Gemini cached content and later calls send only the dynamic part plus the cached content name.
+ * Uploads run on their own virtual threads, one per template version; until one has succeeded (and for
+ * retry-after after a failed one) the full prompt is sent. Gemini refuses cached content below a
+ * minimum size, so prefixes estimated under min-tokens are never uploaded.
+ */
+@Slf4j
+@Service
+public class PromptTemplates {
+
+    public static final String ACTIVITY = "activity";
+    public static final String BATCH = "batch";
+
+    private static final String RESPONSE_FORMAT = """
+                    {"analysis":{
+                     "overall": "Overall analysis here",
+                     "pace": "pace analysis here",
+                     "hearRate": "Heart rate analysis here",
+                     "caloriesBurned": "Calories analysis here"
+                     },
+                     "improvements": [{
+                     "area": "Area Name",
+                     "recommendation": "Detailed recommendation"
+                     }
+                     ],
+                      "suggestions": [{
+                     "workout ": "Workout Name",
+                     "description": "Detailed workout description"
+                     }
+                     ],
+                      "safety": [
+                     "Safety Point 1",
+                     "Safety Point 2"
+                     ]
+                     }
+                    """;
+
+    // instructions come first so the whole schema is part of the cacheable static prefix
+    private static final String DEFAULT_ACTIVITY_TEMPLATE = """
+                    Analyze the fitness activity and provide detailed recommendations in the following format
+                    %s
+                     Provide detailed analysis focusing on performance, improvements, next workout suggestions and safety Guidelines
+                     Ensure the response follows the Exact JSON Format shown above.
+
+                     Analyze this activity:
+                     {{activity}}
+                    """.formatted(RESPONSE_FORMAT);
+
+    private static final String DEFAULT_BATCH_TEMPLATE = """
+                    Analyze each of the fitness activities below and provide detailed recommendations for each one.
+                    Respond with a single JSON object whose keys are the Activity Ids and whose values follow this format
+                    %s
+                     Provide detailed analysis focusing on performance, improvements, next workout suggestions and safety Guidelines
+                     Ensure every Activity Id appears as a key and each value follows the Exact JSON Format shown above.
+
+                     Analyze these activities:
+                     {{activities}}
+                    """.formatted(RESPONSE_FORMAT);
+
+    private final GeminiService geminiService;
+    private final Map<String, PromptTemplate> templates;
+    private final AsyncCache<String, CachedContext> contexts;
+    private final ExecutorService uploader = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("gemini-context-", 0).factory());
+    private final Set<String> cacheable;
+    private final boolean contextCacheEnabled;
+    private final Duration contextTtl;
+
+    public PromptTemplates(GeminiService geminiService,
+                           @Value("${ai.prompts.activity.version:v1}") String activityVersion,
+                           @Value("${ai.prompts.activity.template:}") String activityTemplate,
+                           @Value("${ai.prompts.batch.version:v1}") String batchVersion,
+                           @Value("${ai.prompts.batch.template:}") String batchTemplate,
+                           @Value("${gemini.context-cache.enabled:false}") boolean contextCacheEnabled,
+                           @Value("${gemini.context-cache.ttl:1h}") Duration contextTtl,
+                           @Value("${gemini.context-cache.retry-after:10m}") Duration retryAfter,
+                           @Value("${gemini.context-cache.min-tokens:1024}") int minTokens) {
+        this.geminiService = geminiService;
+        this.contextCacheEnabled = contextCacheEnabled;
+        this.contextTtl = contextTtl;
+        this.contexts = Caffeine.newBuilder()
+                .expireAfter(new ContextExpiry(contextTtl, retryAfter))
+                .executor(uploader)
+                .buildAsync();
+        this.templates = Map.of(
+                ACTIVITY, PromptTemplate.compile(ACTIVITY, activityVersion,
+                        activityTemplate.isBlank() ? DEFAULT_ACTIVITY_TEMPLATE : activityTemplate),
+                BATCH, PromptTemplate.compile(BATCH, batchVersion,
+                        batchTemplate.isBlank() ? DEFAULT_BATCH_TEMPLATE : batchTemplate));
+        this.templates.values().forEach(template ->
+                log.info("Compiled prompt template {} ({} static chars)", template.key(), template.getStaticPrefix().length()));
+
+        // about four characters per token, like the governor's estimate
+        this.cacheable = templates.values().stream()
+                .filter(template -> template.getStaticPrefix().length() / 4 >= minTokens)
+                .map(PromptTemplate::key)
+                .collect(Collectors.toUnmodifiableSet());
+        if (contextCacheEnabled) {
+            templates.values().stream()
+                    .filter(template -> !cacheable.contains(template.key()))
+                    .forEach(template -> log.info("Prompt template {} has about {} static tokens, below the {} needed for "
+                                    + "Gemini cached content; sending full prompts",
+                            template.key(), template.getStaticPrefix().length() / 4, minTokens));
+        }
+    }
+
+    public Prompt render(String name, Map<String, String> variables) {
+        PromptTemplate template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("Unknown prompt template " + name);
+        }
+
+        String cachedContent = cachedContextFor(template);
+        return cachedContent == null
+                ? new Prompt(template.render(variables), null)
+                : new Prompt(template.renderDynamic(variables), cachedContent);
+    }
+
+    private String cachedContextFor(PromptTemplate template) {
+        if (!contextCacheEnabled || !cacheable.contains(template.key())) {
+            return null;
+        }
+
+        CompletableFuture<CachedContext> context = contexts.get(template.key(),
+                (key, executor) -> CompletableFuture.supplyAsync(() -> createContext(key, template), executor));
+        // requests arriving while the upload is in flight send the full prompt instead of waiting for it
+        CachedContext created = context.getNow(null);
+        return created == null ? null : created.name();
+    }
+
+    private CachedContext createContext(String key, PromptTemplate template) {
+        try {
+            String name = geminiService.createCachedContent(template.getStaticPrefix(), contextTtl);
+            log.info("Created Gemini cached context {} for prompt template {}", name, key);
+            return new CachedContext(name);
+        } catch (RuntimeException e) {
+            log.warn("Failed to create Gemini cached context for {}, sending full prompts: {}", key, e.getMessage());
+            return new CachedContext(null);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploader.shutdownNow();
+    }
+
+    public record Prompt(String text, String cachedContent) {
+    }
+
+    // name is null after a failed upload
+    private record CachedContext(String name) {
+    }
+
+    // contexts are replaced a little early so requests never reference an expired one
+    private record ContextExpiry(Duration ttl, Duration retryAfter) implements Expiry<String, CachedContext> {
+
+        @Override
+        public long expireAfterCreate(String key, CachedContext context, long currentTime) {
+            return context.name() == null ? retryAfter.toNanos() : ttl.multipliedBy(9).dividedBy(10).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedContext context, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, context, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedContext context, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.dto.RecommendationSummary;
+import com.fitness.aiservice.model.Recommendation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+/**
+ * The newest recommendation summaries of recently active users, so dashboard loads skip Mongo.
+ * Entries are loaded on the first read and updated in place when the pipeline saves a
+ * recommendation for a cached user; users who are not cached are left to load on their next read.
+ * Saves on other instances are not seen here, so entries expire a short ttl after they were loaded.
+ */
+@Service
+public class RecentRecommendationCache {
+
+    private static final Comparator<RecommendationSummary> NEWEST_FIRST = Comparator
+            .comparing(RecommendationSummary::getCreatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(RecommendationSummary::getId, Comparator.nullsLast(Comparator.<String>reverseOrder()));
+
+    // items holds at most size summaries; more is whether the user has older ones
+    public record Recent(List<RecommendationSummary> items, boolean more) {
+    }
+
+    private final Cache<String, Recent> recent;
+    private final int size;
+
+    public RecentRecommendationCache(MeterRegistry meterRegistry,
+                                     @Value("${ai.recent.size:20}") int size,
+                                     @Value("${ai.recent.max-users:50000}") long maxUsers,
+                                     @Value("${ai.recent.ttl:2m}") Duration ttl) {
+        this.size = size;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfter(new LoadExpiry(ttl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, recent, "ai.recommendation.recent");
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // loader takes the user and a row limit; one row more than size is asked for to learn whether more exist
+    public Recent get(String userId, BiFunction<String, Integer, List<RecommendationSummary>> loader) {
+        return recent.get(userId, user -> {
+            List<RecommendationSummary> loaded = loader.apply(user, size + 1);
+            return new Recent(List.copyOf(loaded.subList(0, Math.min(size, loaded.size()))), loaded.size() > size);
+        });
+    }
+
+    // a re-saved activity (retry, streamed sections) replaces its earlier summary rather than adding one
+    public void onSaved(Recommendation recommendation) {
+        if (recommendation.getUserId() == null) {
+            return;
+        }
+        RecommendationSummary summary = RecommendationPageQuery.summarize(recommendation);
+        recent.asMap().computeIfPresent(recommendation.getUserId(), (userId, current) -> {
+            List<RecommendationSummary> updated = new ArrayList<>(current.items().size() + 1);
+            updated.add(summary);
+            current.items().stream()
+                    .filter(existing -> !Objects.equals(existing.getActivityId(), summary.getActivityId()))
+                    .forEach(updated::add);
+            updated.sort(NEWEST_FIRST);
+            // whatever is trimmed off the end is still in Mongo
+            return new Recent(List.copyOf(updated.subList(0, Math.min(size, updated.size()))),
+                    current.more() || updated.size() > size);
+        });
+    }
+
+    // counted from the load; in-place updates from onSaved do not extend it
+    private record LoadExpiry(Duration ttl) implements Expiry<String, Recent> {
+
+        @Override
+        public long expireAfterCreate(String userId, Recent entry, long currentTime) {
+            return ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String userId, Recent entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String userId, Recent entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.CachedRecommendation;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.CachedRecommendationRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Slf4j
+@Service
+public class RecommendationCache {
+
+    private final CachedRecommendationRepository cachedRecommendationRepository;
+    private final Cache<String, CachedRecommendation> memoryCache;
+    private final boolean enabled;
+    private final int durationBucket;
+    private final int caloriesBucket;
+
+    private final Counter persistentHits;
+    private final Counter persistentMisses;
+    private final Counter llmCallsSaved;
+
+    public RecommendationCache(CachedRecommendationRepository cachedRecommendationRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${ai.cache.enabled:true}") boolean enabled,
+                               @Value("${ai.cache.duration-bucket-minutes:5}") int durationBucket,
+                               @Value("${ai.cache.calories-bucket:25}") int caloriesBucket,
+                               @Value("${ai.cache.memory-max-size:10000}") long memoryMaxSize,
+                               @Value("${ai.cache.memory-ttl:6h}") Duration memoryTtl) {
+        this.cachedRecommendationRepository = cachedRecommendationRepository;
+        this.enabled = enabled;
+        this.durationBucket = durationBucket;
+        this.caloriesBucket = caloriesBucket;
+        this.memoryCache = Caffeine.newBuilder()
+                .maximumSize(memoryMaxSize)
+                .expireAfterWrite(memoryTtl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, memoryCache, "ai.recommendation.memory");
+        this.persistentHits = meterRegistry.counter("ai.recommendation.cache.persistent", "result", "hit");
+        this.persistentMisses = meterRegistry.counter("ai.recommendation.cache.persistent", "result", "miss");
+        this.llmCallsSaved = meterRegistry.counter("ai.recommendation.cache.llm.calls.saved");
+    }
+
+    public String fingerprint(Activity activity) {
+        return ActivityFingerprint.of(activity, durationBucket, caloriesBucket);
+    }
+
+    public Optional<Recommendation> lookup(String fingerprint, Activity activity) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        CachedRecommendation cached = memoryCache.getIfPresent(fingerprint);
+        if (cached == null) {
+            cached = cachedRecommendationRepository.findById(fingerprint).orElse(null);
+            if (cached == null) {
+                persistentMisses.increment();
+                return Optional.empty();
+            }
+            persistentHits.increment();
+            memoryCache.put(fingerprint, cached);
+        }
+
+        llmCallsSaved.increment();
+        return Optional.of(Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType())
+                .recommendation(cached.getRecommendation())
+                .improvements(cached.getImprovements())
+                .suggestions(cached.getSuggestions())
+                .safety(cached.getSafety())
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    public void store(String fingerprint, Recommendation recommendation) {
+        if (!enabled) {
+            return;
+        }
+
+        CachedRecommendation cached = CachedRecommendation.builder()
+                .id(fingerprint)
+                .activityType(recommendation.getActivityType())
+                .recommendation(recommendation.getRecommendation())
+                .improvements(recommendation.getImprovements())
+                .suggestions(recommendation.getSuggestions())
+                .safety(recommendation.getSafety())
+                .createdAt(LocalDateTime.now())
+                .build();
+        memoryCache.put(fingerprint, cached);
+        try {
+            cachedRecommendationRepository.save(cached);
+        } catch (Exception e) {
+            log.warn("Failed to persist cached recommendation {}: {}", fingerprint, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.model.RecommendationPhrase;
+import com.fitness.aiservice.repository.RecommendationPhraseRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Storage format 1 for recommendations. Every improvement, suggestion and safety line is interned
+ * into the recommendation_phrases dictionary under a content hash and the document keeps only the
+ * ids; the analysis text is deflated once it is longer than compress-threshold characters, with its
+ * first line kept in plain text for summary pages. Phrases are written before the document that
+ * references them and never change, so the in-process dictionary cache needs no invalidation.
+ * Lines are stored exactly as generated, and a document referencing a phrase that cannot be found
+ * fails to decode rather than coming back with lines missing.
+ * Documents without a storageFormat (written before this format, or while encoding is disabled,
+ * or streamed sections not yet finalised) are read as they are.
+ */
+@Service
+public class RecommendationCodec {
+
+    public static final int FORMAT = 1;
+
+    private final MongoTemplate mongoTemplate;
+    private final RecommendationPhraseRepository phraseRepository;
+    private final Cache<String, String> phrases;
+    private final boolean enabled;
+    private final int compressThreshold;
+    private final int compressionLevel;
+
+    public RecommendationCodec(MongoTemplate mongoTemplate,
+                               RecommendationPhraseRepository phraseRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${ai.storage.encoded:true}") boolean enabled,
+                               @Value("${ai.storage.compress-threshold:512}") int compressThreshold,
+                               @Value("${ai.storage.compression-level:6}") int compressionLevel,
+                               @Value("${ai.storage.phrase-cache-size:100000}") long phraseCacheSize,
+                               @Value("${ai.storage.phrase-cache-ttl:12h}") Duration phraseCacheTtl) {
+        this.mongoTemplate = mongoTemplate;
+        this.phraseRepository = phraseRepository;
+        this.enabled = enabled;
+        this.compressThreshold = compressThreshold;
+        this.compressionLevel = compressionLevel;
+        this.phrases = Caffeine.newBuilder()
+                .maximumSize(phraseCacheSize)
+                .expireAfterAccess(phraseCacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, phrases, "ai.recommendation.phrases");
+    }
+
+    // matches documents holding a whole recommendation, in either format
+    public static Criteria complete() {
+        return new Criteria().orOperator(
+                Criteria.where("storageFormat").exists(true),
+                Criteria.where("recommendation").ne(null)
+                        .and("improvements").ne(null)
+                        .and("suggestions").ne(null)
+                        .and("safety").ne(null));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void invalidatePhrases() {
+        phrases.invalidateAll();
+    }
+
+    // returns the document to store; the given recommendation is left as it is
+    public Recommendation encode(Recommendation recommendation) {
+        if (!enabled) {
+            return recommendation;
+        }
+
+        Map<String, String> interned = new LinkedHashMap<>();
+        List<String> improvementIds = intern(recommendation.getImprovements(), interned);
+        List<String> suggestionIds = intern(recommendation.getSuggestions(), interned);
+        List<String> safetyIds = intern(recommendation.getSafety(), interned);
+        storePhrases(interned);
+
+        String text = recommendation.getRecommendation();
+        byte[] deflated = text != null && text.length() > compressThreshold ? deflate(text) : null;
+        boolean compressed = deflated != null && deflated.length < text.getBytes(StandardCharsets.UTF_8).length;
+
+        return Recommendation.builder()
+                .id(recommendation.getId())
+                .activityId(recommendation.getActivityId())
+                .userId(recommendation.getUserId())
+                .activityType(recommendation.getActivityType())
+                .createdAt(recommendation.getCreatedAt())
+                .storageFormat(FORMAT)
+                .recommendation(compressed ? null : text)
+                .recommendationDeflated(compressed ? deflated : null)
+                .firstLine(compressed ? RecommendationPageQuery.summarize(recommendation).getFirstLine() : null)
+                .improvementIds(improvementIds)
+                .suggestionIds(suggestionIds)
+                .safetyIds(safetyIds)
+                .build();
+    }
+
+    public Recommendation decode(Recommendation stored) {
+        if (stored != null) {
+            decode(List.of(stored));
+        }
+        return stored;
+    }
+
+    // resolves the phrases of all documents with one dictionary lookup for whatever is not cached
+    public List<Recommendation> decode(List<Recommendation> stored) {
+        List<Recommendation> encoded = stored.stream()
+                .filter(recommendation -> recommendation.getStorageFormat() != null)
+                .toList();
+        if (encoded.isEmpty()) {
+            return stored;
+        }
+
+        Set<String> ids = new HashSet<>();
+        for (Recommendation recommendation : encoded) {
+            Stream.of(recommendation.getImprovementIds(), recommendation.getSuggestionIds(), recommendation.getSafetyIds())
+                    .filter(Objects::nonNull)
+                    .forEach(ids::addAll);
+        }
+        Map<String, String> texts = phrases.getAll(ids, this::loadPhrases);
+
+        for (Recommendation recommendation : encoded) {
+            if (recommendation.getRecommendationDeflated() != null) {
+                recommendation.setRecommendation(inflate(recommendation.getRecommendationDeflated()));
+            }
+            recommendation.setImprovements(resolve(recommendation.getImprovementIds(), texts));
+            recommendation.setSuggestions(resolve(recommendation.getSuggestionIds(), texts));
+            recommendation.setSafety(resolve(recommendation.getSafetyIds(), texts));
+            recommendation.setStorageFormat(null);
+            recommendation.setFirstLine(null);
+            recommendation.setRecommendationDeflated(null);
+            recommendation.setImprovementIds(null);
+            recommendation.setSuggestionIds(null);
+            recommendation.setSafetyIds(null);
+        }
+        return stored;
+    }
+
+    static String phraseId(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 12));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // hashed byte for byte, so decoding gives back exactly the text that was encoded
+    private List<String> intern(List<String> lines, Map<String, String> interned) {
+        if (lines == null) {
+            return null;
+        }
+        List<String> ids = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            String text = line == null ? "" : line;
+            String id = phraseId(text);
+            interned.put(id, text);
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    // content-addressed upserts, so concurrent writers of the same phrase insert identical documents
+    private void storePhrases(Map<String, String> interned) {
+        List<Pair<Query, Update>> missing = interned.entrySet().stream()
+                .filter(entry -> phrases.getIfPresent(entry.getKey()) == null)
+                .map(entry -> Pair.of(
+                        new Query(Criteria.where("_id").is(entry.getKey())),
+                        new Update().setOnInsert("text", entry.getValue()).setOnInsert("createdAt", LocalDateTime.now())))
+                .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RecommendationPhrase.class)
+                    .upsert(missing)
+                    .execute();
+        } catch (BulkOperationException e) {
+            // a duplicate key only means another writer inserted the same phrase first
+            if (!e.getErrors().stream().allMatch(error -> error.getCode() == 11000)) {
+                throw e;
+            }
+        }
+        phrases.putAll(interned);
+    }
+
+    // ids not in the dictionary are left out here and rejected by resolve
+    private Map<String, String> loadPhrases(Set<? extends String> ids) {
+        Map<String, String> loaded = new LinkedHashMap<>();
+        phraseRepository.findAllById(List.copyOf(ids)).forEach(phrase -> loaded.put(phrase.getId(), phrase.getText()));
+        return loaded;
+    }
+
+    private List<String> resolve(Collection<String> ids, Map<String, String> texts) {
+        if (ids == null) {
+            return null;
+        }
+        List<String> resolved = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            String text = texts.get(id);
+            if (text == null) {
+                throw new RuntimeException("Recommendation phrase " + id + " is missing from the dictionary");
+            }
+            resolved.add(text);
+        }
+        return resolved;
+    }
+
+    private byte[] deflate(String text) {
+        Deflater deflater = new Deflater(compressionLevel);
+        try {
+            deflater.setInput(text.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(text.length() / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private String inflate(byte[] deflated) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(deflated.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new RuntimeException("Truncated compressed recommendation text");
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new RuntimeException("Corrupt compressed recommendation text", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Removes duplicate recommendations for the dedupe-recommendations profile, keeping the newest
+ * document (by createdAt, then _id) of each activityId. Runs before RecommendationIndexes, so the
+ * unique activityId index can be built in the same start. Deleting is idempotent; a stopped run
+ * can simply be started again.
+ */
+@Slf4j
+@Component
+@Profile("dedupe-recommendations")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RecommendationDeduplication implements ApplicationRunner {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${ai.storage.dedupe.batch-size:500}")
+    private int batchSize;
+
+    public RecommendationDeduplication(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String collection = mongoTemplate.getCollectionName(Recommendation.class);
+        Aggregation duplicates = Aggregation.newAggregation(
+                        Aggregation.match(Criteria.where("activityId").ne(null)),
+                        Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt", "_id")),
+                        Aggregation.group("activityId").push("_id").as("ids").count().as("count"),
+                        Aggregation.match(Criteria.where("count").gt(1)))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        long activities = 0;
+        long removed = 0;
+        List<Object> stale = new ArrayList<>(batchSize);
+        try (Stream<Document> stream = mongoTemplate.aggregateStream(duplicates, collection, Document.class)) {
+            Iterator<Document> groups = stream.iterator();
+            while (groups.hasNext()) {
+                List<Object> ids = groups.next().getList("ids", Object.class);
+                // pushed in sort order, so the first id is the one kept
+                stale.addAll(ids.subList(1, ids.size()));
+                activities++;
+                if (stale.size() >= batchSize) {
+                    removed += remove(stale, collection);
+                    log.info("Recommendation dedupe: {} duplicates removed across {} activities", removed, activities);
+                }
+            }
+        }
+        removed += remove(stale, collection);
+        log.info("Recommendation dedupe finished: {} duplicates removed across {} activities", removed, activities);
+    }
+
+    private long remove(List<Object> ids, String collection) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        long deleted = mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), collection).getDeletedCount();
+        ids.clear();
+        return deleted;
+    }
+}
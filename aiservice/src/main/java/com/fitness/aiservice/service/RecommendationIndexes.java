@@ -0,0 +1,41 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the unique activityId index on recommendations once startup has finished, after any
+ * dedupe-recommendations run. It is created here rather than by annotation so that a collection
+ * still holding duplicates from before the index only logs a warning instead of failing startup;
+ * saves stay keyed by activityId either way, the index only settles concurrent upserts.
+ */
+@Slf4j
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class RecommendationIndexes implements ApplicationRunner {
+
+    private final MongoTemplate mongoTemplate;
+
+    public RecommendationIndexes(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            mongoTemplate.indexOps(Recommendation.class).ensureIndex(new Index("activityId", Sort.Direction.ASC).unique());
+        } catch (DataAccessException e) {
+            log.warn("Could not create the unique activityId index on recommendations, "
+                    + "run the dedupe-recommendations profile first: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory registry of clients waiting for an activity's recommendation over SSE. An idle
+ * subscriber is just an async request plus a map entry; no thread is held. Saved recommendations
+ * are broadcast through the recommendation.events fanout exchange, and every instance delivers them
+ * to its own subscribers, so a client may wait on any instance. Writes to clients run on virtual
+ * threads, one per emitter, so a slow client never holds up a pipeline worker, the event listener or
+ * the heartbeat scheduler, which sends keep-alive comments so proxies keep idle streams open.
+ */
+@Slf4j
+@Service
+public class RecommendationNotifier {
+
+    public static final String EVENT_NAME = "recommendation";
+
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("sse-heartbeat").daemon().factory());
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("sse-send-", 0).factory());
+    private final RabbitTemplate rabbitTemplate;
+    private final String exchange;
+    private final Duration timeout;
+
+    public RecommendationNotifier(MeterRegistry meterRegistry,
+                                  RabbitTemplate rabbitTemplate,
+                                  @Value("${ai.events.exchange:recommendation.events}") String exchange,
+                                  @Value("${ai.events.timeout:5m}") Duration timeout,
+                                  @Value("${ai.events.heartbeat:25s}") Duration heartbeatInterval) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.exchange = exchange;
+        this.timeout = timeout;
+        Gauge.builder("ai.recommendation.subscribers", subscriberCount, AtomicInteger::get)
+                .register(meterRegistry);
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats,
+                heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // register before checking for an existing recommendation, so a save in between is not missed
+    public SseEmitter subscribe(String activityId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        subscribers.computeIfAbsent(activityId, id -> ConcurrentHashMap.newKeySet()).add(emitter);
+        subscriberCount.incrementAndGet();
+
+        Runnable remove = () -> unsubscribe(activityId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        return emitter;
+    }
+
+    // tells every instance, this one included, that the recommendation was saved
+    public void broadcast(Recommendation recommendation) {
+        try {
+            rabbitTemplate.convertAndSend(exchange, "", recommendation);
+        } catch (AmqpException e) {
+            // subscribers on other instances will time out, but the ones here can still be served
+            log.warn("Failed to broadcast recommendation for activity {}: {}", recommendation.getActivityId(), e.getMessage());
+            publish(recommendation);
+        }
+    }
+
+    // the events queue is exclusive to this instance; a lost event only leaves subscribers to time out
+    @RabbitListener(queues = "#{recommendationEventsQueue.name}", ackMode = "AUTO")
+    public void onRecommendationSaved(Recommendation recommendation) {
+        publish(recommendation);
+    }
+
+    public void publish(Recommendation recommendation) {
+        Set<SseEmitter> waiting = subscribers.remove(recommendation.getActivityId());
+        if (waiting == null) {
+            return;
+        }
+        subscriberCount.addAndGet(-waiting.size());
+        waiting.forEach(emitter -> sender.execute(() -> send(emitter, recommendation)));
+    }
+
+    // delivers to one emitter that found the recommendation already saved
+    public void send(SseEmitter emitter, Recommendation recommendation) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(EVENT_NAME)
+                    .id(recommendation.getActivityId())
+                    .data(recommendation));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void unsubscribe(String activityId, SseEmitter emitter) {
+        subscribers.computeIfPresent(activityId, (id, emitters) -> {
+            if (emitters.remove(emitter)) {
+                subscriberCount.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private void sendHeartbeats() {
+        subscribers.values().forEach(emitters -> emitters.forEach(emitter -> sender.execute(() -> {
+            try {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+            } catch (IOException | IllegalStateException e) {
+                // the client went away; completing triggers the removal callback
+                emitter.completeWithError(e);
+            }
+        })));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        sender.shutdownNow();
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+}
@@ -0,0 +1,88 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.dto.RecommendationSummary;
+import com.fitness.aiservice.model.Recommendation;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset page queries over a user's recommendations, newest createdAt first with id as tie-breaker,
+ * served by the user_createdAt_id index. Only a summary is projected: the stored first line of a
+ * compressed body, otherwise a bounded prefix of the recommendation text cut on the server, so full
+ * bodies never leave Mongo.
+ * The cursor is the opaque (createdAt, id) of the previous page's last row.
+ */
+public final class RecommendationPageQuery {
+
+    private static final int FIRST_LINE_PREFIX = 160;
+
+    private RecommendationPageQuery() {
+    }
+
+    public static TypedAggregation<Recommendation> build(String userId, String cursor, int limit) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+
+        if (cursor != null && !cursor.isBlank()) {
+            RecommendationSummary last = decodeCursor(cursor);
+            criteria = criteria.orOperator(
+                    Criteria.where("createdAt").lt(last.getCreatedAt()),
+                    Criteria.where("createdAt").is(last.getCreatedAt()).and("id").lt(last.getId()));
+        }
+
+        return Aggregation.newAggregation(Recommendation.class,
+                Aggregation.match(criteria),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt", "id")),
+                Aggregation.limit(limit),
+                Aggregation.project("activityId", "activityType", "createdAt")
+                        .and(ConditionalOperators.ifNull("firstLine")
+                                .thenValueOf(StringOperators.valueOf(ConditionalOperators.ifNull("recommendation").then(""))
+                                        .substringCP(0, FIRST_LINE_PREFIX)))
+                        .as("firstLine"));
+    }
+
+    public static RecommendationSummary summarize(RecommendationSummary summary) {
+        String text = summary.getFirstLine();
+        if (text != null) {
+            int newline = text.indexOf('\n');
+            summary.setFirstLine((newline < 0 ? text : text.substring(0, newline)).trim());
+        }
+        return summary;
+    }
+
+    public static RecommendationSummary summarize(Recommendation recommendation) {
+        String text = recommendation.getRecommendation() == null ? "" : recommendation.getRecommendation();
+        return summarize(RecommendationSummary.builder()
+                .id(recommendation.getId())
+                .activityId(recommendation.getActivityId())
+                .activityType(recommendation.getActivityType())
+                .createdAt(recommendation.getCreatedAt())
+                .firstLine(text.substring(0, Math.min(text.length(), FIRST_LINE_PREFIX)))
+                .build());
+    }
+
+    public static String encodeCursor(RecommendationSummary last) {
+        String raw = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static RecommendationSummary decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return RecommendationSummary.builder()
+                    .createdAt(LocalDateTime.parse(raw.substring(0, separator)))
+                    .id(raw.substring(separator + 1))
+                    .build();
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.EventLane;
+import com.fitness.aiservice.model.Recommendation;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs LLM calls on virtual threads so in-flight recommendations are not tied to consumer threads.
+ * Deliveries are buffered in a FairScheduler (interactive lane first, users in turn) and max-in-flight
+ * workers take from it; the buffer is bounded by the listener prefetch on each lane's queue, and
+ * each message is acked only after its recommendation is saved or its retry has been scheduled.
+ * Deliveries of an activity that is already in flight or processed are acked without an LLM call.
+ * While the Gemini circuit breaker refuses requests, workers stop taking from the buffer, and a
+ * delivery refused by the breaker is requeued without counting as a retry attempt.
+ * In batched mode deliveries are grouped for up to batch-window or batch-size items per LLM prompt.
+ */
+@Slf4j
+@Service
+public class RecommendationPipeline {
+
+    // how long workers wait before checking the circuit breaker again
+    private static final long HOLD_MILLIS = 250;
+
+    private final ActivityAiService aiService;
+    private final RecommendationService recommendationService;
+    private final RecommendationRetryService retryService;
+    private final ProcessedActivityRegistry processed;
+    private final GeminiCircuitBreaker circuitBreaker;
+    private final String mode;
+    private final Semaphore inFlight;
+    private final int batchSize;
+    private final Duration batchWindow;
+    private final FairScheduler<Delivery> scheduler;
+    private final Map<EventLane, Timer> laneWait = new EnumMap<>(EventLane.class);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean running = true;
+
+    public RecommendationPipeline(ActivityAiService aiService,
+                                  RecommendationService recommendationService,
+                                  RecommendationRetryService retryService,
+                                  ProcessedActivityRegistry processed,
+                                  GeminiCircuitBreaker circuitBreaker,
+                                  MeterRegistry meterRegistry,
+                                  AmqpAdmin amqpAdmin,
+                                  @Value("${ai.pipeline.mode:inline}") String mode,
+                                  @Value("${ai.pipeline.max-in-flight:16}") int maxInFlight,
+                                  @Value("${ai.pipeline.batch-size:8}") int batchSize,
+                                  @Value("${ai.pipeline.batch-window:250ms}") Duration batchWindow,
+                                  @Value("${ai.pipeline.interactive-weight:4}") int interactiveWeight,
+                                  @Value("${rabbitmq.queue.name}") String queue,
+                                  @Value("${rabbitmq.queue.bulk-name:activity.bulk.queue}") String bulkQueue) {
+        this.aiService = aiService;
+        this.recommendationService = recommendationService;
+        this.retryService = retryService;
+        this.processed = processed;
+        this.circuitBreaker = circuitBreaker;
+        this.mode = mode.toLowerCase();
+        this.inFlight = new Semaphore(maxInFlight);
+        // a batch takes one permit per item, so a larger batch could never acquire them all
+        if (batchSize > maxInFlight) {
+            log.warn("ai.pipeline.batch-size {} exceeds max-in-flight {}, using {}", batchSize, maxInFlight, maxInFlight);
+        }
+        this.batchSize = Math.min(batchSize, maxInFlight);
+        this.batchWindow = batchWindow;
+        this.scheduler = new FairScheduler<>(interactiveWeight);
+
+        Map<EventLane, String> queues = Map.of(EventLane.INTERACTIVE, queue, EventLane.BULK, bulkQueue);
+        for (EventLane lane : EventLane.values()) {
+            String tag = lane.name().toLowerCase();
+            laneWait.put(lane, Timer.builder("ai.pipeline.lane.wait")
+                    .description("Time from publish to the start of processing")
+                    .tag("lane", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            Gauge.builder("ai.pipeline.lane.buffered", scheduler, s -> s.size(lane))
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+            Gauge.builder("ai.pipeline.lane.queued", amqpAdmin, admin -> brokerDepth(admin, queues.get(lane)))
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+        }
+
+        if ("batched".equals(this.mode)) {
+            Thread.ofVirtual().name("recommendation-batcher").start(this::collectBatches);
+        } else if ("concurrent".equals(this.mode)) {
+            for (int i = 0; i < maxInFlight; i++) {
+                executor.execute(this::work);
+            }
+        }
+    }
+
+    public void submit(Activity activity, EventLane lane, Instant publishedAt, int attempt, Channel channel, long deliveryTag) {
+        Delivery delivery = new Delivery(activity, lane, publishedAt == null ? Instant.now() : publishedAt, attempt,
+                channel, deliveryTag);
+        ProcessedActivityRegistry.Claim claim = processed.claim(activity.getId());
+        if (claim != ProcessedActivityRegistry.Claim.ACQUIRED) {
+            log.info("Skipping duplicate delivery of activity {} ({})", activity.getId(), claim);
+            delivery.ack();
+            return;
+        }
+        if ("inline".equals(mode)) {
+            try {
+                holdWhileRejecting();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                processed.release(activity.getId());
+                delivery.nack();
+                return;
+            }
+            recordWait(delivery);
+            process(delivery);
+            return;
+        }
+        scheduler.offer(lane, activity.getUserId(), delivery);
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                holdWhileRejecting();
+                Delivery delivery = scheduler.poll(1, TimeUnit.SECONDS);
+                if (delivery != null) {
+                    recordWait(delivery);
+                    process(delivery);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // a worker that dies here is never replaced, so keep polling
+                log.error("Recommendation worker failed: ", e);
+            }
+        }
+    }
+
+    // the ack is outside the try: once the recommendation is saved, a failed ack must not schedule a retry
+    private void process(Delivery delivery) {
+        String activityId = delivery.activity().getId();
+        try {
+            processed.start(activityId);
+            if (processed.isStored(activityId)) {
+                log.info("Skipping activity {}, its recommendation is already stored", activityId);
+            } else {
+                Recommendation recommendation = aiService.generateRecommendation(delivery.activity());
+                recommendationService.save(recommendation);
+                processed.complete(activityId);
+            }
+        } catch (Exception e) {
+            fail(delivery, e);
+            return;
+        }
+        delivery.ack();
+    }
+
+    // waits for a first delivery, then keeps the window open until it expires or the batch is full
+    private void collectBatches() {
+        while (running) {
+            try {
+                holdWhileRejecting();
+                Delivery first = scheduler.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Delivery> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + batchWindow.toNanos();
+                while (batch.size() < batchSize) {
+                    Delivery next = scheduler.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                batch.forEach(this::recordWait);
+                inFlight.acquire(batch.size());
+                executor.execute(() -> processBatch(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void processBatch(List<Delivery> batch) {
+        List<Delivery> pending = new ArrayList<>(batch.size());
+        try {
+            for (Delivery delivery : batch) {
+                String activityId = delivery.activity().getId();
+                try {
+                    processed.start(activityId);
+                    if (!processed.isStored(activityId)) {
+                        pending.add(delivery);
+                        continue;
+                    }
+                } catch (Exception e) {
+                    fail(delivery, e);
+                    continue;
+                }
+                log.info("Skipping activity {}, its recommendation is already stored", activityId);
+                delivery.ack();
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            Map<String, Recommendation> recommendations =
+                    aiService.generateRecommendations(pending.stream().map(Delivery::activity).toList());
+            for (Delivery delivery : pending) {
+                try {
+                    Recommendation recommendation = recommendations.get(delivery.activity().getId());
+                    if (recommendation == null) {
+                        throw new RuntimeException("No recommendation generated for activity " + delivery.activity().getId());
+                    }
+                    recommendationService.save(recommendation);
+                    processed.complete(delivery.activity().getId());
+                } catch (Exception e) {
+                    fail(delivery, e);
+                    continue;
+                }
+                delivery.ack();
+            }
+        } catch (Exception e) {
+            log.error("Failed to process batch of {} activities: ", pending.size(), e);
+            pending.forEach(delivery -> fail(delivery, e));
+        } finally {
+            inFlight.release(batch.size());
+        }
+    }
+
+    // hands the activity to a delayed retry (or the dead-letter queue); requeues only if that publish fails
+    private void fail(Delivery delivery, Exception error) {
+        processed.release(delivery.activity().getId());
+        // a closed channel has already returned the message, and its redelivery was skipped as a duplicate
+        // of this one, so only a live channel can requeue it; otherwise it goes the retry route below
+        if (error instanceof GeminiCircuitOpenException && delivery.channel().isOpen()) {
+            log.info("Gemini circuit is open, requeueing activity {}", delivery.activity().getId());
+            delivery.nack();
+            return;
+        }
+        try {
+            retryService.retryOrDeadLetter(delivery.activity(), delivery.lane(), delivery.attempt(), error);
+        } catch (Exception e) {
+            log.error("Failed to schedule a retry for activity {}, requeueing: ", delivery.activity().getId(), e);
+            delivery.nack();
+            return;
+        }
+        delivery.ack();
+    }
+
+    // unacked deliveries stay with this consumer meanwhile, so intake is bounded by the prefetch
+    private void holdWhileRejecting() throws InterruptedException {
+        while (running && circuitBreaker.isRejecting()) {
+            TimeUnit.MILLISECONDS.sleep(HOLD_MILLIS);
+        }
+    }
+
+    private void recordWait(Delivery delivery) {
+        laneWait.get(delivery.lane()).record(Duration.between(delivery.publishedAt(), Instant.now()));
+    }
+
+    private static double brokerDepth(AmqpAdmin admin, String queue) {
+        try {
+            QueueInformation information = admin.getQueueInfo(queue);
+            return information == null ? Double.NaN : information.getMessageCount();
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private record Delivery(Activity activity, EventLane lane, Instant publishedAt, int attempt,
+                            Channel channel, long deliveryTag) {
+
+        // a failed ack only means the broker redelivers the message later; a saved one is then skipped by the registry
+        void ack() {
+            try {
+                channel.basicAck(deliveryTag, false);
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to ack delivery {}: ", deliveryTag, e);
+            }
+        }
+
+        void nack() {
+            try {
+                channel.basicNack(deliveryTag, false, true);
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to nack delivery {}: ", deliveryTag, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.EventLane;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.GetResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Failed recommendations are re-published to a per-lane, per-attempt retry queue instead of being
+ * requeued straight away. Each retry queue dead-letters back to its lane queue once the message
+ * expires, so the wait happens in the broker and no consumer thread sleeps. Delays grow by the
+ * multiplier per attempt with +/- jitter; after max-attempts the activity goes to the dead-letter
+ * queue, from where replay() moves it back to its lane with a fresh attempt count.
+ * Saves are upserts keyed by activityId, so a retried activity never produces a second recommendation.
+ */
+@Slf4j
+@Service
+public class RecommendationRetryService {
+
+    public static final String ATTEMPT_HEADER = "x-retry-attempt";
+    public static final String ORIGINAL_QUEUE_HEADER = "x-original-queue";
+    public static final String LAST_ERROR_HEADER = "x-last-error";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final Counter retried;
+    private final Counter deadLettered;
+    private final Counter replayed;
+
+    @Value("${rabbitmq.queue.name}")
+    private String queue;
+
+    @Value("${rabbitmq.queue.bulk-name:activity.bulk.queue}")
+    private String bulkQueue;
+
+    @Value("${ai.retry.dead-letter-queue:activity.dlq}")
+    private String deadLetterQueue;
+
+    @Value("${ai.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${ai.retry.initial-delay:5s}")
+    private Duration initialDelay;
+
+    @Value("${ai.retry.multiplier:4}")
+    private double multiplier;
+
+    @Value("${ai.retry.jitter:0.2}")
+    private double jitter;
+
+    @Value("${ai.retry.confirm-timeout:5s}")
+    private Duration confirmTimeout;
+
+    public RecommendationRetryService(RabbitTemplate rabbitTemplate, AmqpAdmin amqpAdmin, MeterRegistry meterRegistry) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        this.retried = meterRegistry.counter("ai.retry.scheduled");
+        this.deadLettered = meterRegistry.counter("ai.retry.dead.lettered");
+        this.replayed = meterRegistry.counter("ai.retry.replayed");
+    }
+
+    public static String retryQueueName(String laneQueue, int attempt) {
+        return laneQueue + ".retry." + attempt;
+    }
+
+    /*
+     * previousAttempts is the number of failed attempts before this one. Returns once the broker has
+     * confirmed the copy, so the caller can ack the original; if this throws, the caller should nack.
+     */
+    public void retryOrDeadLetter(Activity activity, EventLane lane, int previousAttempts, Exception error) {
+        int failedAttempts = previousAttempts + 1;
+        String laneQueue = lane == EventLane.BULK ? bulkQueue : queue;
+        String reason = error.getClass().getSimpleName() + ": " + error.getMessage();
+        if (reason.length() > 500) {
+            reason = reason.substring(0, 500);
+        }
+
+        if (failedAttempts >= maxAttempts) {
+            publishConfirmed(deadLetterQueue, activity, failedAttempts, laneQueue, reason, null);
+            deadLettered.increment();
+            log.error("Activity {} failed {} times, moved to {}: {}", activity.getId(), failedAttempts, deadLetterQueue, reason);
+            return;
+        }
+
+        long delay = delayMillis(failedAttempts);
+        publishConfirmed(retryQueueName(laneQueue, failedAttempts), activity, failedAttempts, laneQueue, reason, delay);
+        retried.increment();
+        log.warn("Activity {} failed attempt {}, retrying in {}ms: {}", activity.getId(), failedAttempts, delay, reason);
+    }
+
+    public long deadLetterCount() {
+        QueueInformation information = amqpAdmin.getQueueInfo(deadLetterQueue);
+        return information == null ? 0 : information.getMessageCount();
+    }
+
+    // moves up to limit dead letters back to their lane queue; they are acked only after the broker confirms the copies
+    public int replay(int limit) {
+        Integer count = rabbitTemplate.execute(channel -> {
+            int moved = 0;
+            long lastTag = -1;
+            while (moved < limit) {
+                GetResponse response = channel.basicGet(deadLetterQueue, false);
+                if (response == null) {
+                    break;
+                }
+                AMQP.BasicProperties properties = response.getProps();
+                Map<String, Object> headers = properties.getHeaders() == null
+                        ? new HashMap<>()
+                        : new HashMap<>(properties.getHeaders());
+                Object originalQueue = headers.getOrDefault(ORIGINAL_QUEUE_HEADER, queue);
+                headers.remove(ATTEMPT_HEADER);
+                headers.remove(LAST_ERROR_HEADER);
+
+                channel.basicPublish("", originalQueue.toString(), properties.builder()
+                        .headers(headers)
+                        .timestamp(new Date())
+                        .build(), response.getBody());
+                lastTag = response.getEnvelope().getDeliveryTag();
+                moved++;
+            }
+            if (moved > 0) {
+                channel.waitForConfirmsOrDie(confirmTimeout.toMillis());
+                channel.basicAck(lastTag, true);
+            }
+            return moved;
+        });
+
+        int moved = count == null ? 0 : count;
+        replayed.increment(moved);
+        log.info("Replayed {} dead-lettered activities", moved);
+        return moved;
+    }
+
+    private long delayMillis(int failedAttempts) {
+        double delay = initialDelay.toMillis() * Math.pow(multiplier, failedAttempts - 1);
+        double spread = jitter > 0 ? 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter) : 1;
+        return Math.max(1, Math.round(delay * spread));
+    }
+
+    // via the default exchange, which routes straight to the named queue
+    private void publishConfirmed(String targetQueue, Activity activity, int failedAttempts,
+                                  String laneQueue, String reason, Long expirationMillis) {
+        rabbitTemplate.invoke(operations -> {
+            operations.convertAndSend("", targetQueue, activity, message -> {
+                message.getMessageProperties().setHeader(ATTEMPT_HEADER, failedAttempts);
+                message.getMessageProperties().setHeader(ORIGINAL_QUEUE_HEADER, laneQueue);
+                message.getMessageProperties().setHeader(LAST_ERROR_HEADER, reason);
+                message.getMessageProperties().setTimestamp(new Date());
+                if (expirationMillis != null) {
+                    message.getMessageProperties().setExpiration(String.valueOf(expirationMillis));
+                }
+                return message;
+            });
+            operations.waitForConfirmsOrDie(confirmTimeout.toMillis());
+            return null;
+        });
+    }
+}
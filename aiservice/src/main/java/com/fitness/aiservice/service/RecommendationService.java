@@ -1,25 +1,132 @@
 package com.fitness.aiservice.service;
 
 
+import com.fitness.aiservice.dto.RecommendationPage;
+import com.fitness.aiservice.dto.RecommendationSummary;
+import com.fitness.aiservice.model.Activity;
 import com.fitness.aiservice.model.Recommendation;
 import com.fitness.aiservice.repository.RecommendationRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class RecommendationService {
 
     private final RecommendationRepository recommendationRepository;
+    private final MongoTemplate mongoTemplate;
+    private final RecentRecommendationCache recentCache;
+    private final RecommendationNotifier notifier;
+    private final RecommendationCodec codec;
+    private final AiPipelineMetrics metrics;
+
+    @Value("${ai.recent.max-page-size:100}")
+    private int maxPageSize;
 
     public List<Recommendation> getUserRecommendation(String userId) {
-                  return recommendationRepository.findByUserId(userId);
+                  return codec.decode(recommendationRepository.findByUserId(userId));
+    }
+
+    // streamed sections are saved before the final write, so only a document with every section counts
+    public Optional<Recommendation> getActivityRecommendation(String activityId) {
+
+                    return recommendationRepository.findByActivityId(activityId).map(codec::decode).filter(this::isComplete);
+    }
+
+    public boolean hasCompleteRecommendation(String activityId) {
+        return mongoTemplate.exists(byActivity(activityId).addCriteria(RecommendationCodec.complete()), Recommendation.class);
+    }
+
+    private boolean isComplete(Recommendation recommendation) {
+        return recommendation.getRecommendation() != null
+                && recommendation.getImprovements() != null
+                && recommendation.getSuggestions() != null
+                && recommendation.getSafety() != null;
     }
 
-    public Recommendation getActivityRecommendation(String activityId) {
+    // first pages within the recent window come from memory; deeper pages are keyset queries
+    public RecommendationPage getUserRecommendationPage(String userId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+
+        if ((cursor == null || cursor.isBlank()) && pageSize <= recentCache.size()) {
+            RecentRecommendationCache.Recent recent = recentCache.get(userId, (user, rows) -> findSummaries(user, null, rows));
+            List<RecommendationSummary> items = recent.items().subList(0, Math.min(pageSize, recent.items().size()));
+            boolean more = recent.items().size() > pageSize || recent.more();
+            return new RecommendationPage(items,
+                    more && !items.isEmpty() ? RecommendationPageQuery.encodeCursor(items.get(items.size() - 1)) : null);
+        }
+
+        List<RecommendationSummary> rows = findSummaries(userId, cursor, pageSize + 1);
+        boolean more = rows.size() > pageSize;
+        List<RecommendationSummary> items = more ? rows.subList(0, pageSize) : rows;
+        return new RecommendationPage(items,
+                more ? RecommendationPageQuery.encodeCursor(items.get(items.size() - 1)) : null);
+    }
+
+    private List<RecommendationSummary> findSummaries(String userId, String cursor, int limit) {
+        return mongoTemplate.aggregate(RecommendationPageQuery.build(userId, cursor, limit), RecommendationSummary.class)
+                .getMappedResults()
+                .stream()
+                .map(RecommendationPageQuery::summarize)
+                .toList();
+    }
+
+    // keyed by activityId, so the final write replaces any sections streamed in earlier
+    public void save(Recommendation recommendation) {
+        // Mongo keeps milliseconds; cursors built from the cached copy must match the stored value exactly
+        if (recommendation.getCreatedAt() != null) {
+            recommendation.setCreatedAt(recommendation.getCreatedAt().truncatedTo(ChronoUnit.MILLIS));
+        }
+        Recommendation saved = metrics.timeSave("final", () -> {
+            Recommendation stored = codec.encode(recommendation);
+            try {
+                return replaceByActivity(stored);
+            } catch (DuplicateKeyException e) {
+                // two upserts raced on the unique activityId index; the loser now finds the winner's document
+                return replaceByActivity(stored);
+            }
+        });
+        if (saved != null) {
+            recommendation.setId(saved.getId());
+        }
+        recentCache.onSaved(recommendation);
+        notifier.broadcast(recommendation);
+    }
+
+    // persists one completed section while the rest of the answer is still streaming
+    public void saveSection(Activity activity, String field, Object value) {
+        Update update = new Update()
+                .setOnInsert("userId", activity.getUserId())
+                .setOnInsert("activityType", activity.getType())
+                .setOnInsert("createdAt", LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS))
+                .set(field, value);
+        metrics.timeSave("section", () -> {
+            try {
+                return mongoTemplate.upsert(byActivity(activity.getId()), update, Recommendation.class);
+            } catch (DuplicateKeyException e) {
+                return mongoTemplate.upsert(byActivity(activity.getId()), update, Recommendation.class);
+            }
+        });
+    }
+
+    private Recommendation replaceByActivity(Recommendation recommendation) {
+        return mongoTemplate.findAndReplace(byActivity(recommendation.getActivityId()), recommendation,
+                FindAndReplaceOptions.options().upsert().returnNew());
+    }
 
-                    return recommendationRepository.findByActivityId(activityId).orElseThrow(() -> new RuntimeException());
+    private Query byActivity(String activityId) {
+        return new Query(Criteria.where("activityId").is(activityId));
     }
 }
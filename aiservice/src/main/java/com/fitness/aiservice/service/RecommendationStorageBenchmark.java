@@ -0,0 +1,122 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.model.RecommendationPhrase;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Storage-size and read-latency comparison for the storage-benchmark profile. A random sample of
+ * complete recommendations is copied into two scratch collections, one in the plain format the
+ * recommendations collection used so far and one in the encoded format, then collection stats and
+ * the latency of by-id reads are logged for the plain copy, the encoded copy with a warm phrase
+ * cache and the encoded copy with a cold one. The sample's phrases go to the real dictionary, where
+ * they are content-addressed and harmless; the scratch collections are dropped at the end.
+ */
+@Slf4j
+@Component
+@Profile("storage-benchmark")
+public class RecommendationStorageBenchmark implements ApplicationRunner {
+
+    private static final String PLAIN = "recommendations_benchmark_plain";
+    private static final String ENCODED = "recommendations_benchmark_encoded";
+
+    private final MongoTemplate mongoTemplate;
+    private final RecommendationCodec codec;
+
+    @Value("${ai.storage.benchmark.sample:5000}")
+    private int sampleSize;
+
+    @Value("${ai.storage.benchmark.reads:2000}")
+    private int reads;
+
+    public RecommendationStorageBenchmark(MongoTemplate mongoTemplate, RecommendationCodec codec) {
+        this.mongoTemplate = mongoTemplate;
+        this.codec = codec;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Recommendation> sample = codec.decode(mongoTemplate.aggregate(Aggregation.newAggregation(
+                        Aggregation.match(RecommendationCodec.complete()),
+                        Aggregation.sample(sampleSize)),
+                mongoTemplate.getCollectionName(Recommendation.class), Recommendation.class).getMappedResults());
+        if (sample.isEmpty()) {
+            log.warn("Storage benchmark skipped: no complete recommendations to sample");
+            return;
+        }
+
+        try {
+            mongoTemplate.dropCollection(PLAIN);
+            mongoTemplate.dropCollection(ENCODED);
+            mongoTemplate.insert(sample, PLAIN);
+            mongoTemplate.insert(sample.stream().map(codec::encode).toList(), ENCODED);
+            List<String> ids = sample.stream().map(Recommendation::getId).toList();
+
+            Document plainStats = collStats(PLAIN);
+            Document encodedStats = collStats(ENCODED);
+            Document phraseStats = collStats(mongoTemplate.getCollectionName(RecommendationPhrase.class));
+            log.info("""
+                            Storage benchmark: {} recommendations
+                              plain:    size={} storageSize={} avgObjSize={}
+                              encoded:  size={} storageSize={} avgObjSize={}
+                              phrases (whole dictionary): count={} size={} storageSize={}""",
+                    sample.size(),
+                    plainStats.get("size"), plainStats.get("storageSize"), plainStats.get("avgObjSize"),
+                    encodedStats.get("size"), encodedStats.get("storageSize"), encodedStats.get("avgObjSize"),
+                    phraseStats.get("count"), phraseStats.get("size"), phraseStats.get("storageSize"));
+
+            report("plain", ids, id -> mongoTemplate.findById(id, Recommendation.class, PLAIN));
+            report("encoded, warm phrase cache", ids,
+                    id -> codec.decode(mongoTemplate.findById(id, Recommendation.class, ENCODED)));
+            report("encoded, cold phrase cache", ids, id -> {
+                codec.invalidatePhrases();
+                codec.decode(mongoTemplate.findById(id, Recommendation.class, ENCODED));
+            });
+        } finally {
+            mongoTemplate.dropCollection(PLAIN);
+            mongoTemplate.dropCollection(ENCODED);
+        }
+    }
+
+    private Document collStats(String collection) {
+        return mongoTemplate.executeCommand(new Document("collStats", collection));
+    }
+
+    private void report(String label, List<String> ids, Consumer<String> read) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < Math.min(reads, 200); i++) {
+            read.accept(ids.get(random.nextInt(ids.size())));
+        }
+
+        List<Long> micros = new ArrayList<>(reads);
+        for (int i = 0; i < reads; i++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            long started = System.nanoTime();
+            read.accept(id);
+            micros.add((System.nanoTime() - started) / 1000);
+        }
+        micros.sort(null);
+        log.info("Storage benchmark read latency ({}): p50={}us p90={}us p99={}us max={}us",
+                label, percentile(micros, 50), percentile(micros, 90), percentile(micros, 99), percentile(micros, 100));
+    }
+
+    private long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
@@ -0,0 +1,79 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Rewrites plain-text recommendations into the encoded storage format, for the migrate-storage
+ * profile. Documents are walked in _id order in batches and each is replaced only while it still
+ * has no storageFormat, so the service can keep running (and the pipeline keep saving) while this
+ * runs, and a stopped run can simply be started again. Reads accept both formats throughout;
+ * setting ai.storage.encoded=false goes back to writing plain documents.
+ */
+@Slf4j
+@Component
+@Profile("migrate-storage")
+public class RecommendationStorageMigration implements ApplicationRunner {
+
+    private final MongoTemplate mongoTemplate;
+    private final RecommendationCodec codec;
+
+    @Value("${ai.storage.migration.batch-size:500}")
+    private int batchSize;
+
+    public RecommendationStorageMigration(MongoTemplate mongoTemplate, RecommendationCodec codec) {
+        this.mongoTemplate = mongoTemplate;
+        this.codec = codec;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!codec.isEnabled()) {
+            log.warn("Storage migration skipped: ai.storage.encoded is false");
+            return;
+        }
+
+        String lastId = null;
+        long migrated = 0;
+        long skipped = 0;
+        while (true) {
+            Criteria criteria = Criteria.where("storageFormat").exists(false)
+                    .and("recommendation").ne(null)
+                    .and("improvements").ne(null)
+                    .and("suggestions").ne(null)
+                    .and("safety").ne(null);
+            if (lastId != null) {
+                criteria = criteria.and("id").gt(lastId);
+            }
+            List<Recommendation> batch = mongoTemplate.find(new Query(criteria)
+                    .with(Sort.by("id"))
+                    .limit(batchSize), Recommendation.class);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            for (Recommendation plain : batch) {
+                Query unchanged = new Query(Criteria.where("id").is(plain.getId()).and("storageFormat").exists(false));
+                if (mongoTemplate.findAndReplace(unchanged, codec.encode(plain)) != null) {
+                    migrated++;
+                } else {
+                    skipped++;
+                }
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+            log.info("Storage migration: {} recommendations encoded, {} changed concurrently and skipped", migrated, skipped);
+        }
+        log.info("Storage migration finished: {} recommendations encoded, {} skipped", migrated, skipped);
+    }
+}
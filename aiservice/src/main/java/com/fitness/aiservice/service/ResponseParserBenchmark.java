@@ -0,0 +1,166 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Parse-cost comparison for the parser-benchmark profile. Synthetic Gemini answers, fenced JSON of
+ * the shape the prompt asks for, are parsed three ways: the earlier path (a new ObjectMapper per
+ * call, regex clean-up of the answer text and a second full parse), the current single-call path
+ * (shared mapper, brace trimming, two parses) and StreamingRecommendationParser fed the answer in
+ * stream-sized fragments. Time per response and bytes allocated on the parsing thread are logged.
+ */
+@Slf4j
+@Component
+@Profile("parser-benchmark")
+public class ResponseParserBenchmark implements ApplicationRunner {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Value("${ai.parser.benchmark.responses:2000}")
+    private int responseCount;
+
+    @Value("${ai.parser.benchmark.fragment-size:200}")
+    private int fragmentSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> envelopes = new ArrayList<>(responseCount);
+        List<List<String>> fragments = new ArrayList<>(responseCount);
+        for (int i = 0; i < responseCount; i++) {
+            String text = answerText();
+            envelopes.add(envelope(text).toString());
+            fragments.add(split(text));
+        }
+
+        report("regex and double parse", envelopes, this::parseLikeBefore);
+        report("trimmed double parse", envelopes, this::parseSingleCall);
+        report("streaming", fragments, this::parseStreaming);
+    }
+
+    private JsonNode parseLikeBefore(String envelope) {
+        try {
+            String text = new ObjectMapper().readTree(envelope).path("candidates").get(0)
+                    .path("content").path("parts").get(0).path("text").asText()
+                    .replaceAll("json\\n", "")
+                    .replaceAll("\\n", "")
+                    .replaceAll("`", "")
+                    .trim();
+            return new ObjectMapper().readTree(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonNode parseSingleCall(String envelope) {
+        try {
+            String text = MAPPER.readTree(envelope).path("candidates").get(0)
+                    .path("content").path("parts").get(0).path("text").asText();
+            return MAPPER.readTree(text.substring(text.indexOf('{'), text.lastIndexOf('}') + 1));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonNode parseStreaming(List<String> fragments) {
+        try {
+            ObjectNode sections = MAPPER.createObjectNode();
+            StreamingRecommendationParser parser = new StreamingRecommendationParser(MAPPER, sections::set);
+            for (String fragment : fragments) {
+                parser.feed(fragment);
+            }
+            if (!parser.isComplete()) {
+                throw new IllegalStateException("Streamed answer did not close");
+            }
+            return sections;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> void report(String label, List<T> responses, Consumer<T> parse) {
+        for (int i = 0; i < Math.min(responses.size(), 500); i++) {
+            parse.accept(responses.get(i));
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        List<Long> micros = new ArrayList<>(responses.size());
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (T response : responses) {
+            long started = System.nanoTime();
+            parse.accept(response);
+            micros.add((System.nanoTime() - started) / 1000);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        micros.sort(null);
+        log.info("Parser benchmark ({}): p50={}us p90={}us p99={}us max={}us allocated={} bytes/response",
+                label, percentile(micros, 50), percentile(micros, 90), percentile(micros, 99), percentile(micros, 100),
+                allocated / responses.size());
+    }
+
+    // the fenced, pretty-printed answer the prompt asks for, with a varying number of items per section
+    private String answerText() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ObjectNode root = MAPPER.createObjectNode();
+        root.putObject("analysis")
+                .put("overall", "Solid session with consistent effort throughout. ".repeat(random.nextInt(2, 6)))
+                .put("pace", "Pace was steady with a slight fade in the final third. ".repeat(random.nextInt(1, 4)))
+                .put("hearRate", "Heart rate stayed mostly in the aerobic zone. ".repeat(random.nextInt(1, 4)))
+                .put("caloriesBurned", "Calorie burn is in line with the duration and intensity.");
+        ArrayNode improvements = root.putArray("improvements");
+        for (int i = 0; i < random.nextInt(2, 5); i++) {
+            improvements.addObject()
+                    .put("area", "Pacing " + i)
+                    .put("recommendation", "Start slightly slower to hold pace at the end of the run.");
+        }
+        ArrayNode suggestions = root.putArray("suggestions");
+        for (int i = 0; i < random.nextInt(2, 5); i++) {
+            suggestions.addObject()
+                    .put("workout", "Interval Run " + i)
+                    .put("description", "6 x 400m at 5k pace with 90s recovery, then a 10 minute cool-down jog.");
+        }
+        ArrayNode safety = root.putArray("safety");
+        for (int i = 0; i < random.nextInt(2, 5); i++) {
+            safety.add("Warm up for at least 10 minutes and stay hydrated " + i);
+        }
+        return "```json\n" + root.toPrettyString() + "\n```";
+    }
+
+    private ObjectNode envelope(String text) {
+        ObjectNode response = MAPPER.createObjectNode();
+        response.putArray("candidates").addObject()
+                .putObject("content")
+                .put("role", "model")
+                .putArray("parts").addObject().put("text", text);
+        return response;
+    }
+
+    private List<String> split(String text) {
+        List<String> fragments = new ArrayList<>();
+        for (int start = 0; start < text.length(); start += fragmentSize) {
+            fragments.add(text.substring(start, Math.min(text.length(), start + fragmentSize)));
+        }
+        return fragments;
+    }
+
+    private long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
@@ -0,0 +1,108 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * Incrementally parses the model's JSON answer as text fragments arrive from the streaming endpoint.
+ * Tokens of each top-level field (analysis, improvements, suggestions, safety) are buffered and handed
+ * to the callback as soon as that field's value closes, without waiting for the rest of the answer.
+ * Anything before the first '{' (markdown fences, a "json" tag) and after the root object is ignored.
+ * Not thread-safe; use one instance per response.
+ */
+public class StreamingRecommendationParser {
+
+    private final ObjectMapper mapper;
+    private final BiConsumer<String, JsonNode> onSection;
+    private final JsonParser parser;
+
+    private boolean rootStarted;
+    private boolean rootFinished;
+    private int depth;
+    private String section;
+    private TokenBuffer buffer;
+
+    public StreamingRecommendationParser(ObjectMapper mapper, BiConsumer<String, JsonNode> onSection) throws IOException {
+        this.mapper = mapper;
+        this.onSection = onSection;
+        this.parser = mapper.getFactory().createNonBlockingByteArrayParser();
+    }
+
+    public void feed(String text) throws IOException {
+        if (rootFinished || text.isEmpty()) {
+            return;
+        }
+        if (!rootStarted) {
+            int start = text.indexOf('{');
+            if (start < 0) {
+                return;
+            }
+            text = text.substring(start);
+            rootStarted = true;
+        }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, bytes.length);
+
+        JsonToken token;
+        while (!rootFinished && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            handle(token);
+        }
+    }
+
+    public boolean isComplete() {
+        return rootFinished;
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        if (depth == 0) {
+            if (token == JsonToken.START_OBJECT) {
+                depth = 1;
+            }
+            return;
+        }
+
+        if (depth == 1) {
+            if (token == JsonToken.END_OBJECT) {
+                rootFinished = true;
+                depth = 0;
+            } else if (token == JsonToken.FIELD_NAME) {
+                section = parser.currentName();
+            } else if (token.isStructStart()) {
+                buffer = new TokenBuffer(parser);
+                buffer.copyCurrentEvent(parser);
+                depth++;
+            } else {
+                buffer = new TokenBuffer(parser);
+                buffer.copyCurrentEvent(parser);
+                completeSection();
+            }
+            return;
+        }
+
+        buffer.copyCurrentEvent(parser);
+        if (token.isStructStart()) {
+            depth++;
+        } else if (token.isStructEnd()) {
+            depth--;
+            if (depth == 1) {
+                completeSection();
+            }
+        }
+    }
+
+    private void completeSection() throws IOException {
+        try (JsonParser sectionParser = buffer.asParser()) {
+            onSection.accept(section, mapper.readTree(sectionParser));
+        }
+        buffer = null;
+    }
+}
@@ -0,0 +1,63 @@
+package com.fitness.aiservice.config;
+
+import com.fitness.aiservice.model.Activity;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.postprocessor.DelegatingDecompressingPostProcessor;
+import org.springframework.amqp.support.postprocessor.GZipPostProcessor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CborMessageConverterTest {
+
+	private final CborMessageConverter converter = new CborMessageConverter();
+
+	@Test
+	void readsWhatItWrites() {
+		Activity activity = activity();
+
+		Message message = converter.toMessage(activity, new MessageProperties());
+
+		assertThat(message.getMessageProperties().getContentType()).isEqualTo(CborMessageConverter.CONTENT_TYPE_CBOR);
+		assertThat(received(message)).isEqualTo(activity);
+	}
+
+	@Test
+	void readsCompressedMessages() {
+		Activity activity = activity();
+
+		Message message = new GZipPostProcessor().postProcessMessage(converter.toMessage(activity, new MessageProperties()));
+
+		assertThat(received(new DelegatingDecompressingPostProcessor().postProcessMessage(message))).isEqualTo(activity);
+	}
+
+	@Test
+	void leavesOtherContentTypesToTheBaseConverter() {
+		Message json = new Jackson2JsonMessageConverter().toMessage(Map.of("id", "a1"), new MessageProperties());
+
+		assertThat(converter.fromMessage(json)).isInstanceOf(byte[].class);
+	}
+
+	// the listener adapter sets the inferred type from the @RabbitListener parameter
+	private Object received(Message message) {
+		message.getMessageProperties().setInferredArgumentType(Activity.class);
+		return converter.fromMessage(message);
+	}
+
+	private static Activity activity() {
+		Activity activity = new Activity();
+		activity.setId("a1");
+		activity.setUserId("u1");
+		activity.setDuration(30);
+		activity.setCaloriesBurned(300);
+		activity.setStartTime(LocalDateTime.of(2025, 3, 14, 7, 30));
+		activity.setAdditionalMetrics(Map.of("heartRate", Map.of("count", 600, "mean", 142.5), "splits", List.of(1, 2)));
+		return activity;
+	}
+}
@@ -0,0 +1,61 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActivityFingerprintTest {
+
+	@Test
+	void sameBucketsGiveTheSameFingerprint() {
+		Activity first = activity("RUNNING", 31, 305, Map.of());
+		Activity second = activity("RUNNING", 34, 349, Map.of());
+
+		assertThat(ActivityFingerprint.of(first, 5, 50)).isEqualTo(ActivityFingerprint.of(second, 5, 50));
+	}
+
+	@Test
+	void differentTypeOrBucketChangesTheFingerprint() {
+		String running = ActivityFingerprint.of(activity("RUNNING", 30, 300, Map.of()), 5, 50);
+
+		assertThat(ActivityFingerprint.of(activity("CYCLING", 30, 300, Map.of()), 5, 50)).isNotEqualTo(running);
+		assertThat(ActivityFingerprint.of(activity("RUNNING", 35, 300, Map.of()), 5, 50)).isNotEqualTo(running);
+	}
+
+	@Test
+	void metricsAreCanonicalized() {
+		Map<String, Object> first = new LinkedHashMap<>();
+		first.put("distance", 5.2);
+		first.put("terrain", " Hilly ");
+		first.put("heartRate", Map.of("count", 600, "mean", 141.4));
+		first.put("laps", List.of(1, 2, 3));
+		Map<String, Object> second = new LinkedHashMap<>();
+		second.put("laps", List.of(9, 9, 9));
+		second.put("heartRate", 141);
+		second.put("terrain", "hilly");
+		second.put("distance", 5);
+
+		assertThat(ActivityFingerprint.of(activity("RUNNING", 30, 300, first), 5, 50))
+				.isEqualTo(ActivityFingerprint.of(activity("RUNNING", 30, 300, second), 5, 50));
+	}
+
+	@Test
+	void missingValuesAreDistinctFromZero() {
+		assertThat(ActivityFingerprint.of(activity("RUNNING", null, 300, null), 5, 50))
+				.isNotEqualTo(ActivityFingerprint.of(activity("RUNNING", 0, 300, null), 5, 50));
+	}
+
+	private Activity activity(String type, Integer duration, Integer calories, Map<String, Object> metrics) {
+		Activity activity = new Activity();
+		activity.setType(type);
+		activity.setDuration(duration);
+		activity.setCaloriesBurned(calories);
+		activity.setAdditionalMetrics(metrics);
+		return activity;
+	}
+}
@@ -0,0 +1,67 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.EventLane;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FairSchedulerTest {
+
+	@Test
+	void usersTakeTurnsWithinALane() throws InterruptedException {
+		FairScheduler<String> scheduler = new FairScheduler<>(4);
+		scheduler.offer(EventLane.BULK, "alice", "a1");
+		scheduler.offer(EventLane.BULK, "alice", "a2");
+		scheduler.offer(EventLane.BULK, "alice", "a3");
+		scheduler.offer(EventLane.BULK, "bob", "b1");
+		scheduler.offer(EventLane.BULK, "carol", "c1");
+
+		assertThat(drain(scheduler)).containsExactly("a1", "b1", "c1", "a2", "a3");
+	}
+
+	@Test
+	void bulkLaneGetsATurnAfterInteractiveWeightItems() throws InterruptedException {
+		FairScheduler<String> scheduler = new FairScheduler<>(2);
+		for (int i = 1; i <= 5; i++) {
+			scheduler.offer(EventLane.INTERACTIVE, "user" + i, "i" + i);
+		}
+		scheduler.offer(EventLane.BULK, "importer", "b1");
+		scheduler.offer(EventLane.BULK, "importer", "b2");
+
+		assertThat(drain(scheduler)).containsExactly("i1", "i2", "b1", "i3", "i4", "b2", "i5");
+	}
+
+	@Test
+	void tracksBufferedItemsPerLane() throws InterruptedException {
+		FairScheduler<String> scheduler = new FairScheduler<>(4);
+		scheduler.offer(EventLane.INTERACTIVE, "alice", "i1");
+		scheduler.offer(EventLane.BULK, "bob", "b1");
+		scheduler.offer(EventLane.BULK, null, "b2");
+
+		assertThat(scheduler.size(EventLane.INTERACTIVE)).isEqualTo(1);
+		assertThat(scheduler.size(EventLane.BULK)).isEqualTo(2);
+
+		scheduler.poll(0, TimeUnit.MILLISECONDS);
+		assertThat(scheduler.size(EventLane.INTERACTIVE)).isZero();
+	}
+
+	@Test
+	void pollTimesOutWhenEmpty() throws InterruptedException {
+		FairScheduler<String> scheduler = new FairScheduler<>(4);
+
+		assertThat(scheduler.poll(10, TimeUnit.MILLISECONDS)).isNull();
+	}
+
+	private List<String> drain(FairScheduler<String> scheduler) throws InterruptedException {
+		List<String> items = new ArrayList<>();
+		String item;
+		while ((item = scheduler.poll(0, TimeUnit.MILLISECONDS)) != null) {
+			items.add(item);
+		}
+		return items;
+	}
+}
@@ -0,0 +1,105 @@
+package com.fitness.aiservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeminiCircuitBreakerTest {
+
+	@Test
+	void opensAfterConsecutiveFailures() {
+		GeminiCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+		fail(breaker, 2);
+		assertThat(breaker.getState()).isEqualTo(GeminiCircuitBreaker.State.CLOSED);
+		assertThat(breaker.allowRequest()).isTrue();
+		breaker.onFailure();
+
+		assertThat(breaker.getState()).isEqualTo(GeminiCircuitBreaker.State.OPEN);
+		assertThat(breaker.isRejecting()).isTrue();
+		assertThat(breaker.allowRequest()).isFalse();
+	}
+
+	@Test
+	void successAndIgnoredResultsDoNotCountTowardsOpening() {
+		GeminiCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+		fail(breaker, 2);
+		breaker.allowRequest();
+		breaker.onSuccess();
+		fail(breaker, 2);
+		breaker.allowRequest();
+		breaker.onIgnored();
+		fail(breaker, 0);
+
+		assertThat(breaker.getState()).isEqualTo(GeminiCircuitBreaker.State.CLOSED);
+		assertThat(breaker.isRejecting()).isFalse();
+	}
+
+	@Test
+	void halfOpenAdmitsOneProbe() {
+		GeminiCircuitBreaker breaker = breaker(Duration.ZERO);
+
+		fail(breaker, 3);
+
+		assertThat(breaker.getState()).isEqualTo(GeminiCircuitBreaker.State.HALF_OPEN);
+		assertThat(breaker.isRejecting()).isFalse();
+		assertThat(breaker.allowRequest()).isTrue();
+		assertThat(breaker.isRejecting()).isTrue();
+		assertThat(breaker.allowRequest()).isFalse();
+	}
+
+	@Test
+	void probeSuccessCloses() {
+		GeminiCircuitBreaker breaker = breaker(Duration.ZERO);
+		fail(breaker, 3);
+
+		breaker.allowRequest();
+		breaker.onSuccess();
+
+		assertThat(breaker.getState()).isEqualTo(GeminiCircuitBreaker.State.CLOSED);
+		assertThat(breaker.allowRequest()).isTrue();
+		assertThat(breaker.allowRequest()).isTrue();
+	}
+
+	@Test
+	void probeFailureReopens() throws InterruptedException {
+		GeminiCircuitBreaker breaker = breaker(Duration.ofMillis(200));
+		fail(breaker, 3);
+		assertThat(breaker.getState()).isEqualTo(GeminiCircuitBreaker.State.OPEN);
+		Thread.sleep(250);
+		assertThat(breaker.getState()).isEqualTo(GeminiCircuitBreaker.State.HALF_OPEN);
+
+		breaker.allowRequest();
+		breaker.onFailure();
+
+		assertThat(breaker.getState()).isEqualTo(GeminiCircuitBreaker.State.OPEN);
+		assertThat(breaker.allowRequest()).isFalse();
+	}
+
+	@Test
+	void ignoredProbeFreesTheSlotWithoutClosing() {
+		GeminiCircuitBreaker breaker = breaker(Duration.ZERO);
+		fail(breaker, 3);
+
+		breaker.allowRequest();
+		breaker.onIgnored();
+
+		assertThat(breaker.getState()).isEqualTo(GeminiCircuitBreaker.State.HALF_OPEN);
+		assertThat(breaker.allowRequest()).isTrue();
+	}
+
+	private static GeminiCircuitBreaker breaker(Duration openDuration) {
+		return new GeminiCircuitBreaker(new SimpleMeterRegistry(), 3, openDuration);
+	}
+
+	private static void fail(GeminiCircuitBreaker breaker, int times) {
+		for (int i = 0; i < times; i++) {
+			breaker.allowRequest();
+			breaker.onFailure();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.fitness.aiservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeminiGovernorTest {
+
+	private static final Duration FAST = Duration.ofMillis(100);
+	private static final Duration SLOW = Duration.ofSeconds(11);
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void growsOnFastSuccess() throws InterruptedException {
+		GeminiGovernor governor = governor(4);
+
+		governor.acquire(10);
+		governor.release(FAST, true, false);
+
+		assertThat(limit()).isEqualTo(4.25);
+	}
+
+	@Test
+	void halvesWhenThrottledOrSlow() throws InterruptedException {
+		GeminiGovernor governor = governor(8);
+
+		governor.acquire(10);
+		governor.release(FAST, false, true);
+		assertThat(limit()).isEqualTo(4);
+
+		governor.acquire(10);
+		governor.release(SLOW, true, false);
+		assertThat(limit()).isEqualTo(2);
+		assertThat(meterRegistry.counter("gemini.governor.throttled").count()).isEqualTo(1);
+	}
+
+	@Test
+	void keepsLimitOnOtherFailures() throws InterruptedException {
+		GeminiGovernor governor = governor(4);
+
+		for (int i = 0; i < 10; i++) {
+			governor.acquire(10);
+			governor.release(FAST, false, false);
+		}
+
+		assertThat(limit()).isEqualTo(4);
+	}
+
+	@Test
+	void neverDropsBelowMinimum() throws InterruptedException {
+		GeminiGovernor governor = governor(1);
+
+		governor.acquire(10);
+		governor.release(FAST, false, true);
+
+		assertThat(limit()).isEqualTo(1);
+	}
+
+	@Test
+	void blocksAtTheConcurrencyLimit() throws Exception {
+		GeminiGovernor governor = governor(1);
+		governor.acquire(10);
+
+		CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+			try {
+				governor.acquire(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		Thread.sleep(100);
+		assertThat(second).isNotDone();
+
+		governor.release(FAST, true, false);
+		second.get(5, TimeUnit.SECONDS);
+		assertThat(meterRegistry.get("gemini.governor.in.flight").gauge().value()).isEqualTo(1);
+	}
+
+	private GeminiGovernor governor(int initialConcurrency) {
+		return new GeminiGovernor(meterRegistry, 1000, 1_000_000, 1, 32, initialConcurrency, Duration.ofSeconds(10));
+	}
+
+	private double limit() {
+		return meterRegistry.get("gemini.governor.concurrency.limit").gauge().value();
+	}
+}
@@ -0,0 +1,87 @@
+package com.fitness.aiservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ProcessedActivityRegistryTest {
+
+	private final RecommendationService recommendationService = mock(RecommendationService.class);
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void secondClaimWhileInFlightIsRefused() {
+		ProcessedActivityRegistry registry = registry(Duration.ofMinutes(5));
+
+		assertThat(registry.claim("a1")).isEqualTo(ProcessedActivityRegistry.Claim.ACQUIRED);
+		assertThat(registry.claim("a1")).isEqualTo(ProcessedActivityRegistry.Claim.IN_FLIGHT);
+		assertThat(registry.claim("a2")).isEqualTo(ProcessedActivityRegistry.Claim.ACQUIRED);
+	}
+
+	@Test
+	void completedActivityStaysProcessed() {
+		ProcessedActivityRegistry registry = registry(Duration.ofMinutes(5));
+
+		registry.claim("a1");
+		registry.complete("a1");
+		registry.release("a1");
+
+		assertThat(registry.claim("a1")).isEqualTo(ProcessedActivityRegistry.Claim.PROCESSED);
+	}
+
+	@Test
+	void releasedClaimCanBeTakenAgain() {
+		ProcessedActivityRegistry registry = registry(Duration.ofMinutes(5));
+
+		registry.claim("a1");
+		registry.release("a1");
+
+		assertThat(registry.claim("a1")).isEqualTo(ProcessedActivityRegistry.Claim.ACQUIRED);
+	}
+
+	@Test
+	void leaseRunsFromTheStartOfProcessing() {
+		ProcessedActivityRegistry registry = new ProcessedActivityRegistry(
+				recommendationService, meterRegistry, 1000, Duration.ofHours(1), Duration.ZERO, Duration.ofMinutes(30));
+
+		registry.claim("a1");
+		assertThat(registry.claim("a1")).isEqualTo(ProcessedActivityRegistry.Claim.IN_FLIGHT);
+
+		registry.start("a1");
+		assertThat(registry.claim("a1")).isEqualTo(ProcessedActivityRegistry.Claim.ACQUIRED);
+		assertThat(meterRegistry.counter("ai.idempotency.lease.expired").count()).isEqualTo(1);
+	}
+
+	@Test
+	void claimsNeverQueryMongo() {
+		ProcessedActivityRegistry registry = registry(Duration.ofMinutes(5));
+
+		registry.claim("a1");
+		registry.start("a1");
+
+		verifyNoInteractions(recommendationService);
+	}
+
+	@Test
+	void storedRecommendationCountsAsProcessed() {
+		when(recommendationService.hasCompleteRecommendation("a1")).thenReturn(true);
+		ProcessedActivityRegistry registry = registry(Duration.ofMinutes(5));
+
+		assertThat(registry.claim("a1")).isEqualTo(ProcessedActivityRegistry.Claim.ACQUIRED);
+		assertThat(registry.isStored("a1")).isTrue();
+		assertThat(registry.isStored("a2")).isFalse();
+		assertThat(registry.claim("a1")).isEqualTo(ProcessedActivityRegistry.Claim.PROCESSED);
+		assertThat(registry.claim("a2")).isEqualTo(ProcessedActivityRegistry.Claim.ACQUIRED);
+	}
+
+	private ProcessedActivityRegistry registry(Duration lease) {
+		return new ProcessedActivityRegistry(recommendationService, meterRegistry, 1000, Duration.ofHours(1), lease, lease);
+	}
+}
@@ -0,0 +1,63 @@
+package com.fitness.aiservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PromptTemplateTest {
+
+	@Test
+	void splitsTheStaticPrefixFromTheDynamicRemainder() {
+		PromptTemplate template = PromptTemplate.compile("activity", "v1",
+				"You are a coach.\nActivity: {{ type }} for {{duration}} minutes.");
+
+		assertThat(template.key()).isEqualTo("activity:v1");
+		assertThat(template.getStaticPrefix()).isEqualTo("You are a coach.\nActivity: ");
+		assertThat(template.getDynamicSegments()).containsExactly(
+				PromptTemplate.Segment.variable("type"),
+				PromptTemplate.Segment.literal(" for "),
+				PromptTemplate.Segment.variable("duration"),
+				PromptTemplate.Segment.literal(" minutes."));
+	}
+
+	@Test
+	void rendersThePrefixFollowedByTheDynamicPart() {
+		PromptTemplate template = PromptTemplate.compile("activity", "v1", "Coach.\n{{type}}, {{duration}} min");
+		Map<String, String> variables = Map.of("type", "RUNNING", "duration", "30");
+
+		assertThat(template.renderDynamic(variables)).isEqualTo("RUNNING, 30 min");
+		assertThat(template.render(variables)).isEqualTo("Coach.\nRUNNING, 30 min");
+	}
+
+	@Test
+	void templateStartingWithAVariableHasNoPrefix() {
+		PromptTemplate template = PromptTemplate.compile("activity", "v1", "{{type}} only");
+
+		assertThat(template.getStaticPrefix()).isEmpty();
+		assertThat(template.render(Map.of("type", "SWIMMING"))).isEqualTo("SWIMMING only");
+	}
+
+	@Test
+	void templateWithoutVariablesIsAllPrefix() {
+		PromptTemplate template = PromptTemplate.compile("activity", "v1", "No variables here.");
+
+		assertThat(template.getStaticPrefix()).isEqualTo("No variables here.");
+		assertThat(template.getDynamicSegments()).isEmpty();
+		assertThat(template.render(Map.of())).isEqualTo("No variables here.");
+	}
+
+	@Test
+	void rejectsUnclosedAndMissingVariables() {
+		assertThatThrownBy(() -> PromptTemplate.compile("activity", "v1", "Coach {{type"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("activity:v1");
+
+		PromptTemplate template = PromptTemplate.compile("activity", "v1", "Coach {{type}}");
+		assertThatThrownBy(() -> template.render(Map.of()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("type");
+	}
+}
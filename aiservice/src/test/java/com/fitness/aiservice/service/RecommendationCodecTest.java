@@ -0,0 +1,120 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.model.RecommendationPhrase;
+import com.fitness.aiservice.repository.RecommendationPhraseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecommendationCodecTest {
+
+	private static final String ANALYSIS = "Steady aerobic effort.\n" + "Heart rate stayed in zone two for most of the run. ".repeat(20);
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final RecommendationPhraseRepository phraseRepository = mock(RecommendationPhraseRepository.class);
+
+	RecommendationCodecTest() {
+		when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class)))
+				.thenReturn(mock(BulkOperations.class, RETURNS_SELF));
+	}
+
+	@Test
+	void roundTripsTextAndPhrasesExactly() {
+		Recommendation original = recommendation();
+		Recommendation stored = codec().encode(original);
+
+		assertThat(stored.getStorageFormat()).isEqualTo(RecommendationCodec.FORMAT);
+		assertThat(stored.getRecommendation()).isNull();
+		assertThat(stored.getRecommendationDeflated()).isNotEmpty();
+		assertThat(stored.getFirstLine()).isEqualTo("Steady aerobic effort.");
+		assertThat(stored.getImprovements()).isNull();
+		assertThat(stored.getImprovementIds()).hasSize(2);
+
+		// a fresh codec has an empty phrase cache, so decoding goes through the dictionary
+		when(phraseRepository.findAllById(anyList())).thenReturn(dictionary(original));
+		Recommendation decoded = codec().decode(stored);
+
+		assertThat(decoded).usingRecursiveComparison().isEqualTo(original);
+	}
+
+	@Test
+	void linesDifferingOnlyInWhitespaceKeepTheirOwnIds() {
+		Recommendation stored = codec().encode(recommendation());
+
+		assertThat(stored.getImprovementIds()).doesNotHaveDuplicates();
+	}
+
+	@Test
+	void shortTextIsStoredPlain() {
+		Recommendation original = recommendation();
+		original.setRecommendation("Short and easy.");
+
+		Recommendation stored = codec().encode(original);
+
+		assertThat(stored.getRecommendation()).isEqualTo("Short and easy.");
+		assertThat(stored.getRecommendationDeflated()).isNull();
+		assertThat(stored.getFirstLine()).isNull();
+	}
+
+	@Test
+	void missingPhraseFailsTheDecode() {
+		Recommendation stored = codec().encode(recommendation());
+		when(phraseRepository.findAllById(anyList())).thenReturn(List.of());
+
+		assertThatThrownBy(() -> codec().decode(stored))
+				.isInstanceOf(RuntimeException.class)
+				.hasMessageContaining("missing from the dictionary");
+	}
+
+	@Test
+	void documentsWithoutAFormatAreReadAsTheyAre() {
+		Recommendation legacy = recommendation();
+
+		assertThat(codec().decode(legacy)).usingRecursiveComparison().isEqualTo(recommendation());
+	}
+
+	private RecommendationCodec codec() {
+		return new RecommendationCodec(mongoTemplate, phraseRepository, new SimpleMeterRegistry(),
+				true, 512, 6, 1000, Duration.ofHours(1));
+	}
+
+	private static Recommendation recommendation() {
+		return Recommendation.builder()
+				.id("r1")
+				.activityId("a1")
+				.userId("u1")
+				.activityType("RUNNING")
+				.createdAt(LocalDateTime.of(2025, 3, 14, 7, 30))
+				.recommendation(ANALYSIS)
+				.improvements(List.of("Run the first mile slower.", "Run the first mile slower. "))
+				.suggestions(List.of("Add one tempo session a week."))
+				.safety(List.of("Hydrate before long runs.", ""))
+				.build();
+	}
+
+	private static List<RecommendationPhrase> dictionary(Recommendation recommendation) {
+		Map<String, String> texts = Stream.of(recommendation.getImprovements(), recommendation.getSuggestions(), recommendation.getSafety())
+				.flatMap(List::stream)
+				.collect(Collectors.toMap(RecommendationCodec::phraseId, text -> text, (a, b) -> a));
+		return texts.entrySet().stream()
+				.map(entry -> RecommendationPhrase.builder().id(entry.getKey()).text(entry.getValue()).build())
+				.toList();
+	}
+}
@@ -0,0 +1,102 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.EventLane;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecommendationRetryServiceTest {
+
+	private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+	private final RabbitOperations operations = mock(RabbitOperations.class);
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final RecommendationRetryService retryService =
+			new RecommendationRetryService(rabbitTemplate, mock(AmqpAdmin.class), meterRegistry);
+	private final Activity activity = new Activity();
+
+	RecommendationRetryServiceTest() {
+		activity.setId("a1");
+		activity.setUserId("u1");
+		ReflectionTestUtils.setField(retryService, "queue", "activity.queue");
+		ReflectionTestUtils.setField(retryService, "bulkQueue", "activity.bulk.queue");
+		ReflectionTestUtils.setField(retryService, "deadLetterQueue", "activity.dlq");
+		ReflectionTestUtils.setField(retryService, "maxAttempts", 3);
+		ReflectionTestUtils.setField(retryService, "initialDelay", Duration.ofSeconds(5));
+		ReflectionTestUtils.setField(retryService, "multiplier", 4.0);
+		ReflectionTestUtils.setField(retryService, "jitter", 0.0);
+		ReflectionTestUtils.setField(retryService, "confirmTimeout", Duration.ofSeconds(5));
+		when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class)))
+				.thenAnswer(invocation -> invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(operations));
+	}
+
+	@Test
+	void firstFailureWaitsTheInitialDelayInTheLaneRetryQueue() {
+		retryService.retryOrDeadLetter(activity, EventLane.INTERACTIVE, 0, new RuntimeException("Gemini timed out"));
+
+		MessageProperties properties = published("activity.queue.retry.1");
+		assertThat(properties.getExpiration()).isEqualTo("5000");
+		assertThat(properties.<Integer>getHeader(RecommendationRetryService.ATTEMPT_HEADER)).isEqualTo(1);
+		assertThat(properties.<String>getHeader(RecommendationRetryService.ORIGINAL_QUEUE_HEADER)).isEqualTo("activity.queue");
+		assertThat(properties.<String>getHeader(RecommendationRetryService.LAST_ERROR_HEADER))
+				.isEqualTo("RuntimeException: Gemini timed out");
+		assertThat(meterRegistry.counter("ai.retry.scheduled").count()).isEqualTo(1);
+	}
+
+	@Test
+	void delayGrowsByTheMultiplierAndBulkStaysInItsLane() {
+		retryService.retryOrDeadLetter(activity, EventLane.BULK, 1, new RuntimeException("again"));
+
+		MessageProperties properties = published("activity.bulk.queue.retry.2");
+		assertThat(properties.getExpiration()).isEqualTo("20000");
+		assertThat(properties.<String>getHeader(RecommendationRetryService.ORIGINAL_QUEUE_HEADER)).isEqualTo("activity.bulk.queue");
+	}
+
+	@Test
+	void lastAttemptGoesToTheDeadLetterQueueWithoutExpiry() {
+		retryService.retryOrDeadLetter(activity, EventLane.BULK, 2, new RuntimeException("still failing"));
+
+		MessageProperties properties = published("activity.dlq");
+		assertThat(properties.getExpiration()).isNull();
+		assertThat(properties.<Integer>getHeader(RecommendationRetryService.ATTEMPT_HEADER)).isEqualTo(3);
+		assertThat(properties.<String>getHeader(RecommendationRetryService.ORIGINAL_QUEUE_HEADER)).isEqualTo("activity.bulk.queue");
+		assertThat(meterRegistry.counter("ai.retry.dead.lettered").count()).isEqualTo(1);
+		assertThat(meterRegistry.counter("ai.retry.scheduled").count()).isZero();
+	}
+
+	@Test
+	void unconfirmedPublishPropagatesSoTheCallerNacks() {
+		doThrow(new IllegalStateException("nacked")).when(operations).waitForConfirmsOrDie(anyLong());
+
+		assertThatThrownBy(() -> retryService.retryOrDeadLetter(activity, EventLane.INTERACTIVE, 0, new RuntimeException("x")))
+				.isInstanceOf(IllegalStateException.class);
+		assertThat(meterRegistry.counter("ai.retry.scheduled").count()).isZero();
+	}
+
+	private MessageProperties published(String queue) {
+		ArgumentCaptor<MessagePostProcessor> postProcessor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+		verify(operations).convertAndSend(eq(""), eq(queue), eq(activity), postProcessor.capture());
+		verify(operations).waitForConfirmsOrDie(5000);
+		return postProcessor.getValue().postProcessMessage(new Message(new byte[0])).getMessageProperties();
+	}
+}
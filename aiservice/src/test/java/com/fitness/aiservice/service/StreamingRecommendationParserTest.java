@@ -0,0 +1,66 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingRecommendationParserTest {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final Map<String, JsonNode> sections = new LinkedHashMap<>();
+
+	@Test
+	void emitsEachSectionAsItCloses() throws IOException {
+		StreamingRecommendationParser parser = new StreamingRecommendationParser(mapper, sections::put);
+
+		parser.feed("```json\n{\"analy");
+		parser.feed("sis\": {\"overall\": \"go");
+		assertThat(sections).isEmpty();
+
+		parser.feed("od\"}, \"improvements\": [{\"area\": \"Pace\"}]");
+		assertThat(sections).containsOnlyKeys("analysis", "improvements");
+		assertThat(sections.get("analysis").path("overall").asText()).isEqualTo("good");
+
+		parser.feed(", \"safety\": [\"Stay hydrated\"]}\n```");
+		assertThat(sections).containsOnlyKeys("analysis", "improvements", "safety");
+		assertThat(sections.get("safety").get(0).asText()).isEqualTo("Stay hydrated");
+		assertThat(parser.isComplete()).isTrue();
+	}
+
+	@Test
+	void handsScalarSectionsOverImmediately() throws IOException {
+		StreamingRecommendationParser parser = new StreamingRecommendationParser(mapper, sections::put);
+
+		parser.feed("{\"note\": \"short\", \"score\": 7}");
+
+		assertThat(sections.get("note").asText()).isEqualTo("short");
+		assertThat(sections.get("score").asInt()).isEqualTo(7);
+	}
+
+	@Test
+	void isIncompleteWithoutTheClosingBrace() throws IOException {
+		StreamingRecommendationParser parser = new StreamingRecommendationParser(mapper, sections::put);
+
+		parser.feed("{\"analysis\": {\"overall\": \"cut off\"}, \"safety\": [");
+
+		assertThat(parser.isComplete()).isFalse();
+		assertThat(sections).containsOnlyKeys("analysis");
+	}
+
+	@Test
+	void ignoresTextAfterTheRootObject() throws IOException {
+		StreamingRecommendationParser parser = new StreamingRecommendationParser(mapper, sections::put);
+
+		parser.feed("{\"safety\": []}");
+		parser.feed(" trailing {\"safety\": [\"ignored\"]}");
+
+		assertThat(parser.isComplete()).isTrue();
+		assertThat(sections.get("safety")).isEmpty();
+	}
+}
@@ -1,7 +1,7 @@
 package com.fitness.gateway;
 
 import com.fitness.gateway.user.RegisterRequest;
-import com.fitness.gateway.user.UserService;
+import com.fitness.gateway.user.SyncedUserCache;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import lombok.RequiredArgsConstructor;
@@ -18,7 +18,7 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class KeyCloakUserSyncFilter implements WebFilter {
 
-    private final UserService userService;
+    private final SyncedUserCache syncedUserCache;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain){
@@ -26,28 +26,13 @@ public class KeyCloakUserSyncFilter implements WebFilter {
         String token = exchange.getRequest().getHeaders().getFirst("Authorization");
         RegisterRequest registerRequest = getUserDetails(token);
 
-        if(userId==null)
+        if(userId==null && registerRequest != null)
             userId = registerRequest.getKeycloakId();
 
         if(userId != null && token != null){
             String finalUserId = userId;
-            return userService.validateUser(userId)
-                    .flatMap(exist -> {
-                        if(!exist){
-                            if (registerRequest != null) {
-                                return userService.registerUser(registerRequest).then(Mono.empty());
-                            }
-                           else{
-                               return Mono.empty();
-                           }
-
-                        }
-                        else{
-                            log.info("User already exist, Skipping sync");
-                            return Mono.empty();
-                        }
-
-            })
+            // after the first request per user this is a local cache hit, not a call to userservice
+            return syncedUserCache.ensureSynced(userId, registerRequest)
                     .then(Mono.defer(() -> {
                 ServerHttpRequest mutatedRequest = exchange.getRequest().mutate()
                         .header("X-User-ID", finalUserId)
@@ -55,7 +40,7 @@ public class KeyCloakUserSyncFilter implements WebFilter {
                 return chain.filter(exchange.mutate().request(mutatedRequest).build());
             }));
         }
-        return null;
+        return chain.filter(exchange);
     }
 
     private RegisterRequest getUserDetails(String token){
@@ -0,0 +1,56 @@
+package com.fitness.gateway.user;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Keycloak subject ids already known to userservice, so the gateway validates (and if needed
+ * registers) each user once per ttl instead of on every request. Concurrent first requests for the
+ * same subject share one in-flight sync. Failed syncs are not cached, and neither are users that
+ * could not be registered because the token carried no profile, so those are retried on the next request.
+ */
+@Slf4j
+@Service
+public class SyncedUserCache {
+
+    private final UserService userService;
+    private final AsyncCache<String, Boolean> synced;
+
+    public SyncedUserCache(UserService userService,
+                           @Value("${user-sync.cache.ttl:1h}") Duration ttl,
+                           @Value("${user-sync.cache.max-size:100000}") long maxSize) {
+        this.userService = userService;
+        this.synced = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+    }
+
+    // completes once the user exists in userservice; registerRequest may be null when the token had no profile
+    public Mono<Void> ensureSynced(String userId, RegisterRequest registerRequest) {
+        // the shared load must not be cancelled when one of the requests waiting on it goes away
+        return Mono.fromFuture(() -> synced.get(userId, (id, executor) -> sync(id, registerRequest).toFuture()), true)
+                .then();
+    }
+
+    // an empty result leaves nothing in the cache
+    private Mono<Boolean> sync(String userId, RegisterRequest registerRequest) {
+        return userService.validateUser(userId)
+                .flatMap(exist -> {
+                    if (exist) {
+                        log.info("User already exist, Skipping sync");
+                        return Mono.just(true);
+                    }
+                    if (registerRequest == null) {
+                        return Mono.empty();
+                    }
+                    return userService.registerUser(registerRequest).thenReturn(true);
+                });
+    }
+}